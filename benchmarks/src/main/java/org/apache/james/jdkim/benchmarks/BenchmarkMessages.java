@@ -0,0 +1,163 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.james.jdkim.impl.Message;
+
+/**
+ * Builds the inputs shared by the benchmarks: messages of the .eml corpus
+ * shipped with the library tests and synthetic bodies of a given shape.
+ */
+public final class BenchmarkMessages {
+
+    private static final String CORPUS = "/org/apache/james/jdkim/corpus/";
+
+    private static final String WORD_CHARS = "abcdefghijklmnopqrstuvwxyz0123456789";
+
+    private BenchmarkMessages() {
+    }
+
+    public static byte[] corpus(String name) throws IOException {
+        try (InputStream is = BenchmarkMessages.class.getResourceAsStream(CORPUS + name)) {
+            if (is == null) {
+                throw new IOException("Corpus message not found: " + name);
+            }
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                bos.write(buffer, 0, read);
+            }
+            return bos.toByteArray();
+        }
+    }
+
+    public static Message parse(byte[] message) throws IOException {
+        try {
+            return new Message(new ByteArrayInputStream(message));
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @param name a corpus message
+     * @return the values of the DKIM-Signature headers of the message
+     */
+    public static List<String> signatureValues(String name) throws IOException {
+        Message message = parse(corpus(name));
+        try {
+            List<String> values = new ArrayList<>();
+            for (String field : message.getFields("DKIM-Signature")) {
+                values.add(field.substring(field.indexOf(':') + 1));
+            }
+            return values;
+        } finally {
+            message.dispose();
+        }
+    }
+
+    /**
+     * @param name a corpus message
+     * @return the header block of the message, CRLF separated, without any
+     * existing DKIM-Signature and without the terminating empty line
+     */
+    public static String unsignedHeaders(String name) throws IOException {
+        Message message = parse(corpus(name));
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (String field : message.getFields()) {
+                if (!field.regionMatches(true, 0, "DKIM-Signature:", 0, 15)) {
+                    sb.append(field).append("\r\n");
+                }
+            }
+            return sb.toString();
+        } finally {
+            message.dispose();
+        }
+    }
+
+    /**
+     * Generates a CRLF terminated ASCII body. The content only depends on
+     * the parameters so runs are comparable.
+     *
+     * @param size              the body size in bytes
+     * @param lineLength        the length of each line, CRLF excluded
+     * @param whitespacePercent percentage of chars being spaces or tabs,
+     *                          including trailing whitespace on lines
+     * @return the body
+     */
+    public static byte[] body(int size, int lineLength, int whitespacePercent) {
+        Random random = new Random(size * 31L + lineLength * 17L + whitespacePercent);
+        byte[] body = new byte[size];
+        int column = 0;
+        for (int i = 0; i < size; i++) {
+            if (column == lineLength || i >= size - 2) {
+                body[i++] = '\r';
+                if (i < size) {
+                    body[i] = '\n';
+                }
+                column = 0;
+            } else {
+                int r = random.nextInt(100);
+                if (r < whitespacePercent) {
+                    body[i] = (byte) (r % 4 == 0 ? '\t' : ' ');
+                } else {
+                    body[i] = (byte) WORD_CHARS.charAt(random.nextInt(WORD_CHARS.length()));
+                }
+                column++;
+            }
+        }
+        return body;
+    }
+
+    public static byte[] message(String headers, byte[] body) {
+        byte[] head = (headers + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] message = new byte[head.length + body.length];
+        System.arraycopy(head, 0, message, 0, head.length);
+        System.arraycopy(body, 0, message, head.length, body.length);
+        return message;
+    }
+
+    public static KeyPair newKeyPair() throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    public static String publicKeyRecord(KeyPair keyPair) {
+        return "k=rsa; p=" + Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()) + ";";
+    }
+}
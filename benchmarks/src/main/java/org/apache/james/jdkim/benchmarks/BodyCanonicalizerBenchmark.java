@@ -0,0 +1,113 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.jdkim.canon.RelaxedBodyCanonicalizer;
+import org.apache.james.jdkim.canon.SimpleBodyCanonicalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of the body canonicalizers, written to in chunks the same way
+ * DKIMCommon.streamCopy does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BodyCanonicalizerBenchmark {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    @Param({"1024", "65536", "1048576"})
+    public int bodySize;
+
+    @Param({"76", "998"})
+    public int lineLength;
+
+    @Param({"0", "10", "50"})
+    public int whitespacePercent;
+
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        body = BenchmarkMessages.body(bodySize, lineLength, whitespacePercent);
+    }
+
+    @Benchmark
+    public void simple(Blackhole blackhole) throws IOException {
+        write(new SimpleBodyCanonicalizer(new BlackholeOutputStream(blackhole)));
+    }
+
+    @Benchmark
+    public void relaxed(Blackhole blackhole) throws IOException {
+        write(new RelaxedBodyCanonicalizer(new BlackholeOutputStream(blackhole)));
+    }
+
+    private void write(OutputStream canonicalizer) throws IOException {
+        for (int off = 0; off < body.length; off += CHUNK_SIZE) {
+            canonicalizer.write(body, off, Math.min(CHUNK_SIZE, body.length - off));
+        }
+        canonicalizer.close();
+    }
+
+    /**
+     * Consumes the canonicalized output so that it cannot be optimized away.
+     */
+    private static class BlackholeOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+            blackhole.consume(len);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.benchmarks;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.jdkim.canon.HeaderCanonicalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Canonicalization of the signed headers of a message carrying several
+ * signatures: for each signature its h= headers and its own unsigned
+ * DKIM-Signature field are canonicalized and digested.
+ * <p>
+ * "regex" is the String based implementation DKIMCommon used before
+ * HeaderCanonicalizer, kept here as the reference; "canonicalizer" is the
+ * buffer the library now reuses per thread. Run with the GC profiler of
+ * BenchmarkRunner to compare the allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HeaderCanonicalizerBenchmark {
+
+    private static final String[][] HEADERS = {
+            {"From", "From: \"Some Sender\" <sender@example.com>"},
+            {"To", "To: first@example.org,\r\n\tsecond@example.org,\r\n\tthird@example.org"},
+            {"Subject", "Subject:   A   subject   with   runs   of   whitespace  "},
+            {"Date", "Date: Mon, 12 Oct 2026 10:21:54 +0200"},
+            {"Message-ID", "Message-ID: <20261012102154.1234567890@mail.example.com>"},
+            {"MIME-Version", "MIME-Version: 1.0"},
+            {"Content-Type", "Content-Type: text/plain;\r\n charset=\"us-ascii\";\r\n format=flowed"},
+            {"Content-Transfer-Encoding", "Content-Transfer-Encoding: 7bit"},
+            {"List-Id", "List-Id: A mailing list <list.example.net>"},
+            {"Reply-To", "Reply-To: list@example.net"},
+    };
+
+    @Param({"1", "3", "10"})
+    public int signatures;
+
+    @Param({"relaxed", "simple"})
+    public String canonicalization;
+
+    private boolean relaxed;
+    private List<String> stubs;
+    private MessageDigest digest;
+    private HeaderCanonicalizer canonicalizer;
+
+    @Setup
+    public void setUp() throws NoSuchAlgorithmException {
+        relaxed = "relaxed".equals(canonicalization);
+        StringBuilder h = new StringBuilder();
+        for (String[] header : HEADERS) {
+            if (h.length() > 0) {
+                h.append(':');
+            }
+            h.append(header[0]);
+        }
+        stubs = new ArrayList<>();
+        for (int i = 0; i < signatures; i++) {
+            stubs.add("DKIM-Signature: v=1; a=rsa-sha256; c=" + canonicalization
+                    + "/relaxed; d=signer" + i + ".example.com;\r\n\ts=selector; t=1791800514;"
+                    + " h=" + h + ";\r\n\tbh=2jUSOH9NhtVGCQWNr9BrIAPreKQjO6Sn7XIkfJVOzv8=; b=");
+        }
+        digest = MessageDigest.getInstance("SHA-256");
+        canonicalizer = new HeaderCanonicalizer();
+    }
+
+    @Benchmark
+    public byte[] regex() {
+        byte[] last = null;
+        for (String stub : stubs) {
+            for (String[] header : HEADERS) {
+                legacyUpdate(digest, relaxed, header[0], header[1]);
+                digest.update("\r\n".getBytes());
+            }
+            legacyUpdate(digest, relaxed, "dkim-signature", stub);
+            last = digest.digest();
+        }
+        return last;
+    }
+
+    @Benchmark
+    public byte[] canonicalizer() {
+        byte[] last = null;
+        for (String stub : stubs) {
+            for (String[] header : HEADERS) {
+                append(relaxed, header[0], header[1]);
+                canonicalizer.appendCRLF();
+            }
+            append(relaxed, "dkim-signature", stub);
+            digest.update(canonicalizer.getBuffer(), 0, canonicalizer.getLength());
+            canonicalizer.reset(64 * 1024);
+            last = digest.digest();
+        }
+        return last;
+    }
+
+    private void append(boolean relaxed, String name, String field) {
+        if (relaxed) {
+            canonicalizer.appendRelaxed(name, field);
+        } else {
+            canonicalizer.appendSimple(field);
+        }
+    }
+
+    private static void legacyUpdate(MessageDigest digest, boolean relaxed,
+                                     String header, String fv) {
+        if (relaxed) {
+            digest.update(header.toLowerCase().getBytes());
+            digest.update(":".getBytes());
+            String headerValue = fv.substring(fv.indexOf(':') + 1);
+            headerValue = headerValue.replaceAll("\r\n[\t ]", " ");
+            headerValue = headerValue.replaceAll("[\t ]+", " ");
+            headerValue = headerValue.trim();
+            digest.update(headerValue.getBytes());
+        } else {
+            digest.update(fv.getBytes());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.jdkim.impl.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing of the corpus messages and retrieval of their header fields, as
+ * done by the signer and the verifier before any hashing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageBenchmark {
+
+    @Param({
+            "gamma_gmail.com.eml",
+            "gamma_gmail.com_duplicateheaders.eml",
+            "multiHeader.eml",
+            "pmta_myspace.com.eml",
+            "s1024_yahoo.com.eml"
+    })
+    public String corpus;
+
+    private byte[] message;
+
+    @Setup
+    public void setUp() throws Exception {
+        message = BenchmarkMessages.corpus(corpus);
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) throws Exception {
+        Message parsed = BenchmarkMessages.parse(message);
+        try {
+            blackhole.consume(parsed.getFields("DKIM-Signature"));
+            blackhole.consume(parsed.getFields());
+        } finally {
+            parsed.dispose();
+        }
+    }
+}
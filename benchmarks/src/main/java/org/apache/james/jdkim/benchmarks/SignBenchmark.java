@@ -0,0 +1,80 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.jdkim.DKIMSigner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DKIMSigner.sign of a corpus header block followed by a synthetic body,
+ * MIME parsing included.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SignBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int bodySize;
+
+    @Param({"76"})
+    public int lineLength;
+
+    @Param({"10"})
+    public int whitespacePercent;
+
+    @Param({"simple", "relaxed"})
+    public String canonicalization;
+
+    private byte[] message;
+
+    private DKIMSigner signer;
+
+    @Setup
+    public void setUp() throws Exception {
+        message = BenchmarkMessages.message(
+                BenchmarkMessages.unsignedHeaders("s1024_yahoo.com.eml"),
+                BenchmarkMessages.body(bodySize, lineLength, whitespacePercent));
+        signer = new DKIMSigner("v=1; a=rsa-sha256; c=" + canonicalization + "/" + canonicalization
+                + "; d=example.com; h=from:to:subject:date:message-id; q=dns/txt; s=bench;",
+                BenchmarkMessages.newKeyPair().getPrivate());
+    }
+
+    @Benchmark
+    public String sign() throws Exception {
+        return signer.sign(new ByteArrayInputStream(message));
+    }
+}
@@ -0,0 +1,107 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.security.KeyPair;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.jdkim.DKIMSigner;
+import org.apache.james.jdkim.DKIMVerifier;
+import org.apache.james.jdkim.api.PublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.SignatureRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DKIMVerifier.verify of a message carrying several valid signatures,
+ * alternating simple and relaxed canonicalization. Keys are served by an
+ * in-memory retriever so that no DNS lookup is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class VerifyBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int bodySize;
+
+    @Param({"76"})
+    public int lineLength;
+
+    @Param({"10"})
+    public int whitespacePercent;
+
+    @Param({"1", "5", "20"})
+    public int signatureCount;
+
+    private byte[] message;
+
+    private DKIMVerifier verifier;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPair keyPair = BenchmarkMessages.newKeyPair();
+        String headers = BenchmarkMessages.unsignedHeaders("s1024_yahoo.com.eml");
+        byte[] body = BenchmarkMessages.body(bodySize, lineLength, whitespacePercent);
+        byte[] unsigned = BenchmarkMessages.message(headers, body);
+
+        StringBuilder signatures = new StringBuilder();
+        for (int i = 0; i < signatureCount; i++) {
+            String canonicalization = i % 2 == 0 ? "relaxed/relaxed" : "simple/simple";
+            DKIMSigner signer = new DKIMSigner("v=1; a=rsa-sha256; c=" + canonicalization
+                    + "; d=example.com; h=from:to:subject:date:message-id; q=dns/txt; s=bench;",
+                    keyPair.getPrivate());
+            signatures.append(signer.sign(new ByteArrayInputStream(unsigned))).append("\r\n");
+        }
+        message = BenchmarkMessages.message(signatures + headers, body);
+
+        List<String> records = Collections.singletonList(BenchmarkMessages.publicKeyRecord(keyPair));
+        PublicKeyRecordRetriever retriever = (methodAndOption, selector, token) -> records;
+        verifier = new DKIMVerifier(retriever);
+
+        if (verify().size() != signatureCount) {
+            throw new IllegalStateException("Not all of the benchmark signatures are valid");
+        }
+    }
+
+    @Benchmark
+    public List<SignatureRecord> verify() throws Exception {
+        try {
+            return verifier.verify(new ByteArrayInputStream(message));
+        } finally {
+            verifier.resetResults();
+        }
+    }
+}
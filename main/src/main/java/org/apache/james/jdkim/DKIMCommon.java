@@ -19,51 +19,99 @@
 
 package org.apache.james.jdkim;
 
+import org.apache.james.jdkim.api.HashMethod;
 import org.apache.james.jdkim.api.Headers;
 import org.apache.james.jdkim.api.SignatureRecord;
+import org.apache.james.jdkim.api.SigningAlgorithm;
+import org.apache.james.jdkim.canon.HeaderCanonicalizer;
 import org.apache.james.jdkim.exceptions.PermFailException;
+import org.apache.james.jdkim.impl.CryptoEngines;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.Signature;
 import java.security.SignatureException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 
 public abstract class DKIMCommon {
 
     private static final boolean DEEP_DEBUG = false;
 
+    // buffers of unusually big header sets are not retained by the threads.
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private static final ThreadLocal<HeaderCanonicalizer> CANONICALIZER =
+            ThreadLocal.withInitial(HeaderCanonicalizer::new);
+
+    /**
+     * @param sign the signature record
+     * @return the JCA name of the signature algorithm, e.g. SHA256withRSA
+     */
+    protected static String signatureAlgorithm(SignatureRecord sign) {
+        Optional<SigningAlgorithm> signingAlgorithm = sign.getSigningAlgorithm();
+        Optional<HashMethod> hashMethod = sign.getHashingMethod();
+        if (signingAlgorithm.isPresent() && hashMethod.isPresent()) {
+            return signingAlgorithm.get().asJdkSignatureAlgorithm(hashMethod.get());
+        }
+        // unsupported algorithms, the JCA lookup will fail with their name.
+        return sign.getHashMethod().toString().toUpperCase(Locale.US)
+                + "with" + sign.getHashKeyType().toString().toUpperCase(Locale.US);
+    }
+
+    private static boolean isEd25519(SignatureRecord sign) {
+        return sign.getSigningAlgorithm().filter(SigningAlgorithm.ED25519::equals).isPresent();
+    }
+
     protected static void updateSignature(Signature signature,
                                           boolean relaxed,
                                           CharSequence header,
                                           String fv) throws SignatureException {
+        HeaderCanonicalizer canonicalizer = CANONICALIZER.get();
+        try {
+            appendHeader(canonicalizer, relaxed, header, fv);
+            signature.update(canonicalizer.getBuffer(), 0, canonicalizer.getLength());
+        } finally {
+            canonicalizer.reset(MAX_RETAINED_BUFFER);
+        }
+    }
+
+    private static void appendHeader(HeaderCanonicalizer canonicalizer,
+                                     boolean relaxed,
+                                     CharSequence header,
+                                     String fv) {
+        int start = canonicalizer.getLength();
         if (relaxed) {
-            if (DEEP_DEBUG)
-                System.out
-                        .println("#" + header.toString().toLowerCase() + ":-");
-            signature.update(header.toString().toLowerCase().getBytes());
-            signature.update(":".getBytes());
-            String headerValue = fv.substring(fv.indexOf(':') + 1);
-            headerValue = headerValue.replaceAll("\r\n[\t ]", " ");
-            headerValue = headerValue.replaceAll("[\t ]+", " ");
-            headerValue = headerValue.trim();
-            signature.update(headerValue.getBytes());
-            if (DEEP_DEBUG)
-                System.out.println("#" + headerValue + "#");
+            canonicalizer.appendRelaxed(header, fv);
         } else {
-            signature.update(fv.getBytes());
-            if (DEEP_DEBUG)
-                System.out.println("#" + fv + "#");
+            canonicalizer.appendSimple(fv);
         }
+        if (DEEP_DEBUG)
+            System.out.println("#" + new String(canonicalizer.getBuffer(), start,
+                    canonicalizer.getLength() - start) + "#");
     }
 
     protected static void signatureCheck(Headers h, SignatureRecord sign,
                                          List<CharSequence> headers, Signature signature)
             throws SignatureException, PermFailException {
+        signatureCheck(h, sign, headers, signature, CryptoEngines.getDefault());
+    }
+
+    /**
+     * Feeds the canonicalized signed headers to the signature.
+     *
+     * @param engines supplies the digest of the headers signed by ed25519
+     */
+    protected static void signatureCheck(Headers h, SignatureRecord sign,
+                                         List<CharSequence> headers, Signature signature,
+                                         CryptoEngines engines)
+            throws SignatureException, PermFailException {
 
         boolean relaxedHeaders = SignatureRecord.RELAXED.equals(sign.getHeaderCanonicalisationMethod());
         if (!relaxedHeaders
@@ -72,31 +120,60 @@ public abstract class DKIMCommon {
                     + sign.getHeaderCanonicalisationMethod());
         }
 
-        // NOTE: this could be improved by using iterators.
-        // NOTE: this relies on the list returned by Message being in insertion
-        // order
-        Map<String, Integer> processedHeader = new HashMap<>();
-
-        for (CharSequence header : headers) {
-            // NOTE check this getter is case insensitive
-            List<String> hl = h.getFields(header.toString());
-            if (hl != null && !hl.isEmpty()) {
-                String lowerCaseHeader = header.toString().toLowerCase(Locale.US);
-                Integer done = processedHeader.get(lowerCaseHeader);
-                if (done == null)
-                    done = 0;
-                int doneHeaders = done + 1;
-                if (doneHeaders <= hl.size()) {
-                    String fv = hl.get(hl.size() - doneHeaders);
-                    updateSignature(signature, relaxedHeaders, header, fv);
-                    signature.update("\r\n".getBytes());
-                    processedHeader.put(lowerCaseHeader, doneHeaders);
+        // all of the canonicalized headers are collected in a single buffer
+        // reused by the thread and passed to the signature at once.
+        HeaderCanonicalizer canonicalizer = CANONICALIZER.get();
+        try {
+            // NOTE: this could be improved by using iterators.
+            // NOTE: this relies on the list returned by Message being in insertion
+            // order
+            Map<String, Integer> processedHeader = new HashMap<>();
+
+            for (CharSequence header : headers) {
+                // NOTE check this getter is case insensitive
+                List<String> hl = h.getFields(header.toString());
+                if (hl != null && !hl.isEmpty()) {
+                    String lowerCaseHeader = header.toString().toLowerCase(Locale.US);
+                    Integer done = processedHeader.get(lowerCaseHeader);
+                    if (done == null)
+                        done = 0;
+                    int doneHeaders = done + 1;
+                    if (doneHeaders <= hl.size()) {
+                        String fv = hl.get(hl.size() - doneHeaders);
+                        appendHeader(canonicalizer, relaxedHeaders, header, fv);
+                        canonicalizer.appendCRLF();
+                        processedHeader.put(lowerCaseHeader, doneHeaders);
+                    }
                 }
             }
+
+            String signatureStub = "DKIM-Signature:" + sign.toUnsignedString();
+            appendHeader(canonicalizer, relaxedHeaders, "dkim-signature", signatureStub);
+            if (isEd25519(sign)) {
+                // RFC 8463: PureEdDSA signs the hash of the headers.
+                signature.update(headerHash(sign, canonicalizer, engines));
+            } else {
+                signature.update(canonicalizer.getBuffer(), 0, canonicalizer.getLength());
+            }
+        } finally {
+            canonicalizer.reset(MAX_RETAINED_BUFFER);
         }
+    }
 
-        String signatureStub = "DKIM-Signature:" + sign.toUnsignedString();
-        updateSignature(signature, relaxedHeaders, "dkim-signature", signatureStub);
+    private static byte[] headerHash(SignatureRecord sign, HeaderCanonicalizer canonicalizer,
+                                     CryptoEngines engines)
+            throws PermFailException {
+        String algorithm = sign.getHashAlgo().toString();
+        MessageDigest md;
+        try {
+            md = engines.getMessageDigest(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new PermFailException("Unsupported algorythm: " + algorithm, sign, e);
+        }
+        md.update(canonicalizer.getBuffer(), 0, canonicalizer.getLength());
+        byte[] hash = md.digest();
+        engines.releaseMessageDigest(algorithm, md);
+        return hash;
     }
 
     public static void streamCopy(InputStream bodyIs, OutputStream out)
@@ -19,6 +19,7 @@
 
 package org.apache.james.jdkim;
 
+import static org.apache.james.jdkim.DKIMCommon.signatureAlgorithm;
 import static org.apache.james.jdkim.DKIMCommon.signatureCheck;
 
 import org.apache.commons.codec.binary.Base64;
@@ -28,11 +29,15 @@ import org.apache.james.jdkim.api.SignatureRecord;
 import org.apache.james.jdkim.exceptions.FailException;
 import org.apache.james.jdkim.exceptions.PermFailException;
 import org.apache.james.jdkim.impl.BodyHasherImpl;
+import org.apache.james.jdkim.impl.CryptoEngines;
+import org.apache.james.jdkim.impl.MappedMessage;
 import org.apache.james.jdkim.impl.Message;
 import org.apache.james.jdkim.tagvalue.SignatureRecordTemplate;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
 import java.security.InvalidKeyException;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
@@ -41,25 +46,75 @@ import java.security.Signature;
 import java.security.SignatureException;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DKIMSigner {
 
+    // idle initialized signatures kept per algorithm, enough for one per
+    // core signing concurrently.
+    private static final int MAX_IDLE_SIGNATURES = Runtime.getRuntime().availableProcessors();
+
     private final PrivateKey privateKey;
     private final String signatureRecordTemplate;
+    private final CryptoEngines engines;
+    // the parsed template, copied for each message.
+    private volatile SignatureRecord parsedTemplate;
+    // idle signatures initialized with the private key, by algorithm. They
+    // are owned by the signer, so the key is not retained by the threads
+    // once the signer is discarded.
+    private final Map<String, BlockingQueue<Signature>> signatures =
+            new ConcurrentHashMap<>();
 
     public DKIMSigner(String signatureRecordTemplate, PrivateKey privateKey) {
+        this(signatureRecordTemplate, privateKey, CryptoEngines.getDefault());
+    }
+
+    /**
+     * @param signatureRecordTemplate the DKIM-Signature template
+     * @param privateKey              the signing key
+     * @param engines                 supplies the MessageDigest and
+     *                                Signature engines
+     */
+    public DKIMSigner(String signatureRecordTemplate, PrivateKey privateKey, CryptoEngines engines) {
         this.privateKey = privateKey;
         this.signatureRecordTemplate = signatureRecordTemplate;
+        this.engines = engines;
     }
 
     public SignatureRecord newSignatureRecordTemplate(String record) {
         return new SignatureRecordTemplate(record);
     }
 
+    /**
+     * Parses the template on first use only: the following messages get a
+     * copy of the parsed template.
+     */
+    private SignatureRecord newSignatureRecordTemplate() {
+        SignatureRecord template = parsedTemplate;
+        if (template == null) {
+            template = newSignatureRecordTemplate(signatureRecordTemplate);
+            if (!(template instanceof SignatureRecordTemplate)) {
+                return template;
+            }
+            parsedTemplate = template;
+        }
+        return new SignatureRecordTemplate((SignatureRecordTemplate) template);
+    }
+
     public BodyHasher newBodyHasher(SignatureRecord signRecord)
             throws PermFailException {
-        return new BodyHasherImpl(signRecord);
+        return new BodyHasherImpl(signRecord, engines);
     }
 
     public String sign(InputStream is) throws IOException, FailException {
@@ -77,7 +132,7 @@ public class DKIMSigner {
             }
 
             try {
-                SignatureRecord srt = newSignatureRecordTemplate(signatureRecordTemplate);
+                SignatureRecord srt = newSignatureRecordTemplate();
 
                 BodyHasher bhj = newBodyHasher(srt);
 
@@ -95,6 +150,137 @@ public class DKIMSigner {
         }
     }
 
+    /**
+     * Same as {@link #sign(InputStream)} for a message stored in a file:
+     * large files are memory mapped by a {@link MappedMessage} instead of
+     * being read through streams.
+     *
+     * @param path the message file
+     * @return the DKIM-Signature field
+     * @throws IOException   If error occurs reading the message
+     * @throws FailException if the message cannot be signed
+     */
+    public String sign(Path path) throws IOException, FailException {
+        try (MappedMessage message = new MappedMessage(path)) {
+            SignatureRecord srt = newSignatureRecordTemplate();
+
+            BodyHasher bhj = newBodyHasher(srt);
+
+            // computation of the body hash.
+            message.writeBody(bhj.getOutputStream());
+
+            return sign(message, bhj);
+        }
+    }
+
+    /**
+     * Signs many messages with this signer, for instance the copies of a
+     * newsletter. At most {@code parallelism} messages are signed at once
+     * on the given executor, the next message being read from the iterable
+     * when one is done. A {@link java.util.stream.Stream} can be passed as
+     * {@code stream::iterator}.
+     * <p>
+     * The template is parsed once and the signer keeps a pool of Signatures
+     * initialized with the key, at most one idle per available processor
+     * and algorithm, so the per message cost is the hashing and the
+     * signing.
+     * <p>
+     * Once a message fails no other message is signed: the streams not
+     * read yet are taken from the iterable and closed.
+     *
+     * @param messages    the messages, each stream is closed once read or
+     *                    skipped
+     * @param executor    runs the signing of the messages
+     * @param parallelism the maximum number of messages signed at once
+     * @return the DKIM-Signature fields, in the order of the messages
+     * @throws IOException   If error occurs reading a message
+     * @throws FailException if a message cannot be signed; no other message
+     *                       is submitted then
+     */
+    public List<String> signAll(Iterable<? extends InputStream> messages,
+            Executor executor, int parallelism) throws IOException, FailException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        Semaphore permits = new Semaphore(parallelism);
+        AtomicBoolean failed = new AtomicBoolean();
+        List<CompletableFuture<String>> signatures = new ArrayList<>();
+        Iterator<? extends InputStream> remaining = messages.iterator();
+        try {
+            while (remaining.hasNext()) {
+                InputStream message = remaining.next();
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    message.close();
+                    throw e;
+                }
+                if (failed.get()) {
+                    message.close();
+                    break;
+                }
+                CompletableFuture<String> signature = new CompletableFuture<>();
+                signatures.add(signature);
+                try {
+                    executor.execute(() -> {
+                        try {
+                            signature.complete(sign(message));
+                        } catch (Exception | Error e) {
+                            failed.set(true);
+                            signature.completeExceptionally(e);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    permits.release();
+                    message.close();
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while signing");
+        } finally {
+            closeAll(remaining);
+        }
+
+        List<String> results = new ArrayList<>(signatures.size());
+        for (CompletableFuture<String> signature : signatures) {
+            try {
+                results.add(signature.join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof FailException) {
+                    throw (FailException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new PermFailException("Unexpected exception signing message", (Exception) cause);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Closes the messages left unsigned, their close failures are not
+     * reported as the failure that stopped the signing is.
+     */
+    private static void closeAll(Iterator<? extends InputStream> messages) {
+        while (messages.hasNext()) {
+            InputStream message = messages.next();
+            try {
+                message.close();
+            } catch (IOException e) {
+                // keep closing the other ones.
+            }
+        }
+    }
+
     public String sign(Headers message, BodyHasher bh) throws PermFailException {
         if (!(bh instanceof BodyHasherImpl)) {
             throw new PermFailException(
@@ -136,13 +322,26 @@ public class DKIMSigner {
             throws NoSuchAlgorithmException, InvalidKeyException,
             SignatureException, PermFailException {
 
-        Signature signature = Signature.getInstance(sign.getHashMethod()
-                .toString().toUpperCase()
-                + "with" + sign.getHashKeyType().toString().toUpperCase());
-        signature.initSign(key);
+        String algorithm = signatureAlgorithm(sign);
+        BlockingQueue<Signature> idle = key == privateKey
+                ? signatures.computeIfAbsent(algorithm, a -> new ArrayBlockingQueue<>(MAX_IDLE_SIGNATURES))
+                : null;
+        // a signature failing half way is dropped.
+        Signature signature = idle != null ? idle.poll() : null;
+        if (signature == null) {
+            signature = engines.getSignature(algorithm);
+            signature.initSign(key);
+        }
 
-        signatureCheck(h, sign, headers, signature);
-        return signature.sign();
+        signatureCheck(h, sign, headers, signature, engines);
+        byte[] signed = signature.sign();
+        // sign resets the signature to its initialized state, so it is kept
+        // for the next message. Signatures beyond the bound are dropped,
+        // not released to the engines, which would keep the key per thread.
+        if (idle != null) {
+            idle.offer(signature);
+        }
+        return signed;
     }
 
     /**
@@ -153,7 +352,9 @@ public class DKIMSigner {
      * openssl pkcs8 -topk8 -inform PEM -in rsapriv.pem -outform DER -nocrypt -out rsapriv.der
      * </code> And then base64 encode the content.
      *
-     * @param privateKeyPKCS8 a Base64 encoded string of the RSA key in PKCS8 format
+     * Ed25519 keys (RFC 8463) are accepted too when the JDK supports them.
+     *
+     * @param privateKeyPKCS8 a Base64 encoded string of the RSA or Ed25519 key in PKCS8 format
      * @return the PrivateKey
      * @throws NoSuchAlgorithmException if RSA is unknown
      * @throws InvalidKeySpecException  on bad input key
@@ -164,7 +365,15 @@ public class DKIMSigner {
         // byte[] encKey = privateKey.getBytes();
         PKCS8EncodedKeySpec privSpec = new PKCS8EncodedKeySpec(encKey);
         KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-        return keyFactory.generatePrivate(privSpec);
+        try {
+            return keyFactory.generatePrivate(privSpec);
+        } catch (InvalidKeySpecException e) {
+            try {
+                return KeyFactory.getInstance("Ed25519").generatePrivate(privSpec);
+            } catch (NoSuchAlgorithmException | InvalidKeySpecException ignored) {
+                throw e;
+            }
+        }
     }
 
 }
@@ -19,14 +19,19 @@
 
 package org.apache.james.jdkim;
 
+import static org.apache.james.jdkim.DKIMCommon.signatureAlgorithm;
 import static org.apache.james.jdkim.DKIMCommon.signatureCheck;
 
+import org.apache.james.jdkim.api.AsyncPublicKeyRecordRetriever;
 import org.apache.james.jdkim.api.BodyHasher;
 import org.apache.james.jdkim.api.Headers;
 import org.apache.james.jdkim.api.PublicKeyRecord;
 import org.apache.james.jdkim.api.PublicKeyRecordRetriever;
 import org.apache.james.jdkim.api.Result;
 import org.apache.james.jdkim.api.SignatureRecord;
+import org.apache.james.jdkim.api.SigningAlgorithm;
+import org.apache.james.jdkim.api.VerificationPolicy;
+import org.apache.james.jdkim.api.VerificationOutcome;
 import org.apache.james.jdkim.api.VerifierOptions;
 import org.apache.james.jdkim.exceptions.CompositeFailException;
 import org.apache.james.jdkim.exceptions.FailException;
@@ -34,14 +39,20 @@ import org.apache.james.jdkim.exceptions.PermFailException;
 import org.apache.james.jdkim.exceptions.TempFailException;
 import org.apache.james.jdkim.impl.BodyHasherImpl;
 import org.apache.james.jdkim.impl.CompoundBodyHasher;
+import org.apache.james.jdkim.impl.CryptoEngines;
+import org.apache.james.jdkim.impl.MappedMessage;
 import org.apache.james.jdkim.impl.Message;
+import org.apache.james.jdkim.impl.PublicKeyRecordCache;
+import org.apache.james.jdkim.impl.StreamingMessage;
 import org.apache.james.jdkim.tagvalue.PublicKeyRecordImpl;
-import org.apache.james.jdkim.tagvalue.SignatureRecordImpl;
+import org.apache.james.jdkim.tagvalue.SignatureRecordSnapshot;
 import org.apache.james.jdkim.tagvalue.SignatureRecordTemplate;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.Signature;
@@ -50,14 +61,25 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 public class DKIMVerifier {
+    private static final String NOT_EVALUATED = "not evaluated, another signature is valid";
+
     private final List<Result> result = new ArrayList<>();
     private final VerifierOptions options;
 
@@ -83,12 +105,12 @@ public class DKIMVerifier {
     }
 
     public SignatureRecord newSignatureRecord(String record) {
-        return new SignatureRecordImpl(record);
+        return new SignatureRecordSnapshot(record);
     }
 
     protected BodyHasherImpl newBodyHasher(SignatureRecord signRecord)
             throws PermFailException {
-        return new BodyHasherImpl(signRecord);
+        return new BodyHasherImpl(signRecord, options.getCryptoEngines());
     }
 
     protected PublicKeyRecordRetriever getPublicKeyRecordRetriever()
@@ -104,8 +126,7 @@ public class DKIMVerifier {
         } else {
             for (String record : records) {
                 try {
-                    PublicKeyRecord pk = newPublicKeyRecord(record);
-                    pk.validate();
+                    PublicKeyRecord pk = parsePublicKeyRecord(record);
                     // we expect a single valid record, otherwise the result
                     // is unpredictable.
                     // in case of multiple valid records we use the first one.
@@ -120,6 +141,20 @@ public class DKIMVerifier {
         throw new PermFailException(lastError);
     }
 
+    private PublicKeyRecord parsePublicKeyRecord(String record) {
+        PublicKeyRecordCache cache = options.getPublicKeyRecordCache();
+        if (cache == null) {
+            return newValidPublicKeyRecord(record);
+        }
+        return cache.get(record, this::newValidPublicKeyRecord);
+    }
+
+    private PublicKeyRecord newValidPublicKeyRecord(String record) {
+        PublicKeyRecord pk = newPublicKeyRecord(record);
+        pk.validate();
+        return pk;
+    }
+
     /**
      * asserts applicability of a signature record the a public key record.
      * throws an
@@ -241,56 +276,93 @@ public class DKIMVerifier {
         }
     }
 
+    /**
+     * Same as {@link #verify(InputStream)} but without building a mime4j
+     * DOM: the header block is parsed by a {@link StreamingMessage} and the
+     * body is hashed while it is read from the stream, so it is never
+     * buffered in memory or temporary storage.
+     *
+     * @param is inputStream
+     * @return a list of verified signature records.
+     * @throws IOException If error occurs handling data
+     * @throws FailException if no signature can be verified
+     */
+    public List<SignatureRecord> verifyStreaming(InputStream is) throws IOException,
+            FailException {
+        try {
+            StreamingMessage message = new StreamingMessage(is);
+            return verify(message, message.getBodyInputStream());
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Same as {@link #verify(InputStream)} for a message stored in a file:
+     * large files are memory mapped by a {@link MappedMessage} instead of
+     * being read through streams.
+     *
+     * @param path the message file
+     * @return a list of verified signature records.
+     * @throws IOException If error occurs handling data
+     * @throws FailException if no signature can be verified
+     */
+    public List<SignatureRecord> verify(Path path) throws IOException,
+            FailException {
+        try (MappedMessage message = new MappedMessage(path)) {
+            BodyHasher bh = newBodyHasher(message);
+
+            if (bh == null) return null;
+
+            CompoundBodyHasher cbh = validateBodyHasher(bh);
+
+            // simultaneous computation of all the hashes.
+            message.writeBody(cbh.getOutputStream());
+
+            return verify(cbh);
+        }
+    }
+
     public BodyHasher newBodyHasher(Headers messageHeaders) throws FailException {
         List<String> fields = messageHeaders.getFields("DKIM-Signature");
         if (fields == null || fields.isEmpty()) {
             return null;
         }
+        return newCompoundBodyHasher(messageHeaders, fields);
+    }
 
+    private CompoundBodyHasher newCompoundBodyHasher(Headers messageHeaders, List<String> fields) {
         // For each DKIM-signature we prepare an hashjob.
         // We calculate all hashes concurrently so to read
         // the inputstream only once.
         Map<String, BodyHasherImpl> bodyHashJobs = new HashMap<>();
         Hashtable<String, FailException> signatureExceptions = new Hashtable<>();
+        Map<String, SignatureRecord> signatureRecords = new LinkedHashMap<>();
         for (String signatureField : fields) {
             try {
-                int pos = signatureField.indexOf(':');
-                if (pos > 0) {
-                    String v = signatureField.substring(pos + 1);
-                    SignatureRecord signatureRecord = null;
-                    try {
-                        signatureRecord = newSignatureRecord(v);
-                    } catch (IllegalStateException e) {
-                        throw new PermFailException("Invalid signature record: " + e.getMessage(), signatureRecord, e);
-                    }
-
-                    // Specification say we MAY refuse to verify the signature.
-                    if (signatureRecord.getSignatureTimestamp() != null) {
-                        Instant signedTime = Instant.ofEpochSecond(signatureRecord.getSignatureTimestamp());
-                        Instant now = Instant.now();
-                        if (signedTime.isAfter(now.plus(options.getClockDriftTolerance()))) {
-                            // RFC 6376, Section 3.5 page 25, about clock drift:
-                            // Receivers MAY add a 'fudge factor' to allow for such possible drift.
-                            Duration diff = Duration.between(now, signedTime);
-                            String diffText;
-                            if (diff.toMillis() >= 86400000) {
-                                diffText = diff.toDays() + " day(s)";
-                            } else if (diff.toMillis() >= 3600000) {
-                                diffText = diff.toHours() + " hour(s)";
-                            } else if (diff.toMillis() >= 60000) {
-                                diffText = diff.toMinutes() + " minute(s)";
-                            } else {
-                                diffText = (diff.toMillis() / 1000) + " second(s)";
-                            }
-                            throw new PermFailException("Signature date is more than "
-                                    + diffText + " in the future.", signatureRecord);
-                        }
-                    }
+                SignatureRecord signatureRecord = signatureRecordFromField(signatureField);
+                checkVerifiable(signatureRecord);
+                signatureRecords.put(signatureField, signatureRecord);
+            } catch (PermFailException e) {
+                signatureExceptions.put(signatureField, e);
+            } catch (RuntimeException e) {
+                signatureExceptions.put(signatureField, new PermFailException(
+                        "Unexpected exception processing signature", e));
+            }
+        }
 
-                    // TODO here we could check more parameters for
-                    // validation before running a network operation like the
-                    // dns lookup.
-                    // e.g: the canonicalization method could be checked now.
+        VerificationPolicy policy = options.getVerificationPolicy();
+        List<String> orderedFields = policy == VerificationPolicy.ALL
+                ? new ArrayList<>(signatureRecords.keySet())
+                : orderedFields(messageHeaders, signatureRecords, policy);
+        // once the headers signature of a record is valid the following
+        // ones are only checked if its body hash does not match.
+        List<String> deferredFields = new ArrayList<>();
+        boolean deferring = false;
+        for (String signatureField : orderedFields) {
+            SignatureRecord signatureRecord = signatureRecords.get(signatureField);
+            try {
+                if (!deferring) {
                     PublicKeyRecord publicKeyRecord = publicRecordLookup(signatureRecord);
 
                     List<CharSequence> signedHeadersList = signatureRecord.getHeaders();
@@ -298,17 +370,18 @@ public class DKIMVerifier {
                     byte[] decoded = signatureRecord.getSignature();
                     signatureVerify(messageHeaders, signatureRecord, decoded,
                             publicKeyRecord, signedHeadersList);
+                }
 
-                    // we track all canonicalizations+limit+bodyHash we
-                    // see so to be able to check all of them in a single
-                    // stream run.
-                    BodyHasherImpl bhj = newBodyHasher(signatureRecord);
-
-                    bodyHashJobs.put(signatureField, bhj);
+                // we track all canonicalizations+limit+bodyHash we
+                // see so to be able to check all of them in a single
+                // stream run.
+                BodyHasherImpl bhj = newBodyHasher(signatureRecord);
 
+                bodyHashJobs.put(signatureField, bhj);
+                if (deferring) {
+                    deferredFields.add(signatureField);
                 } else {
-                    throw new PermFailException(
-                            "unexpected bad signature field");
+                    deferring = policy != VerificationPolicy.ALL;
                 }
             } catch (TempFailException | PermFailException e) {
                 signatureExceptions.put(signatureField, e);
@@ -318,7 +391,194 @@ public class DKIMVerifier {
             }
         }
 
-        return new CompoundBodyHasher(bodyHashJobs, signatureExceptions);
+        if (!deferredFields.isEmpty()) {
+            return new DeferringBodyHasher(bodyHashJobs, signatureExceptions,
+                    options.getBodyHashExecutor(), messageHeaders, deferredFields);
+        }
+        return new CompoundBodyHasher(bodyHashJobs, signatureExceptions,
+                options.getBodyHashExecutor());
+    }
+
+    /**
+     * Orders the signatures to be checked by a policy other than
+     * {@link VerificationPolicy#ALL}: the ones of the From domain first
+     * when preferred, then the ones cheaper to verify.
+     *
+     * @param messageHeaders   parsed headers
+     * @param signatureRecords the signature records, by DKIM-Signature field
+     * @param policy           the verification policy
+     * @return the DKIM-Signature fields in checking order
+     */
+    private static List<String> orderedFields(Headers messageHeaders,
+            Map<String, SignatureRecord> signatureRecords, VerificationPolicy policy) {
+        String fromDomain = policy == VerificationPolicy.PREFERRED_DOMAIN_FIRST
+                ? fromDomain(messageHeaders) : null;
+        List<String> fields = new ArrayList<>(signatureRecords.keySet());
+        // the sort is stable, so equal signatures keep the message order.
+        fields.sort(Comparator.comparingInt((String f) -> alignment(signatureRecords.get(f), fromDomain))
+                .thenComparingInt(f -> keyTypeCost(signatureRecords.get(f))));
+        return fields;
+    }
+
+    /**
+     * Only used to order signatures: without a public suffix list any
+     * parent domain is considered aligned.
+     */
+    private static int alignment(SignatureRecord sign, String fromDomain) {
+        if (fromDomain == null) {
+            return 0;
+        }
+        String domain = sign.getDToken().toString().toLowerCase(Locale.US);
+        if (domain.equals(fromDomain)) {
+            return 0;
+        }
+        return fromDomain.endsWith("." + domain) ? 1 : 2;
+    }
+
+    // ed25519 verification is several times cheaper than rsa.
+    private static int keyTypeCost(SignatureRecord sign) {
+        return sign.getSigningAlgorithm()
+                .filter(SigningAlgorithm.ED25519::equals).isPresent() ? 0 : 1;
+    }
+
+    /**
+     * @return the domain of the address in the From field, null if there
+     * is not exactly one From field or no address is found
+     */
+    private static String fromDomain(Headers messageHeaders) {
+        List<String> from = messageHeaders.getFields("From");
+        if (from == null || from.size() != 1) {
+            return null;
+        }
+        String field = from.get(0);
+        int at = field.lastIndexOf('@');
+        int end = at + 1;
+        while (at >= 0 && end < field.length() && (Character.isLetterOrDigit(field.charAt(end))
+                || field.charAt(end) == '-' || field.charAt(end) == '.')) {
+            end++;
+        }
+        return end > at + 1 ? field.substring(at + 1, end).toLowerCase(Locale.US) : null;
+    }
+
+    /**
+     * A CompoundBodyHasher holding signatures whose headers signature was
+     * not checked yet, because another one was valid.
+     */
+    private static class DeferringBodyHasher extends CompoundBodyHasher {
+        private final Headers messageHeaders;
+        private final List<String> deferredFields;
+
+        DeferringBodyHasher(Map<String, BodyHasherImpl> bodyHashJobs,
+                Hashtable<String, FailException> signatureExceptions, Executor executor,
+                Headers messageHeaders, List<String> deferredFields) {
+            super(bodyHashJobs, signatureExceptions, executor);
+            this.messageHeaders = messageHeaders;
+            this.deferredFields = deferredFields;
+        }
+    }
+
+    /**
+     * Parses a DKIM-Signature field and runs the checks not requiring the
+     * public key.
+     *
+     * @param signatureField the full DKIM-Signature field
+     * @return the signature record
+     * @throws PermFailException if the signature cannot be used
+     */
+    private SignatureRecord signatureRecordFromField(String signatureField)
+            throws PermFailException {
+        int pos = signatureField.indexOf(':');
+        if (pos <= 0) {
+            throw new PermFailException("unexpected bad signature field");
+        }
+        String v = signatureField.substring(pos + 1);
+        SignatureRecord signatureRecord = null;
+        try {
+            signatureRecord = newSignatureRecord(v);
+        } catch (IllegalStateException e) {
+            throw new PermFailException("Invalid signature record: " + e.getMessage(), signatureRecord, e);
+        }
+
+        // Specification say we MAY refuse to verify the signature.
+        if (signatureRecord.getSignatureTimestamp() != null) {
+            Instant signedTime = Instant.ofEpochSecond(signatureRecord.getSignatureTimestamp());
+            Instant now = Instant.now();
+            if (signedTime.isAfter(now.plus(options.getClockDriftTolerance()))) {
+                // RFC 6376, Section 3.5 page 25, about clock drift:
+                // Receivers MAY add a 'fudge factor' to allow for such possible drift.
+                Duration diff = Duration.between(now, signedTime);
+                String diffText;
+                if (diff.toMillis() >= 86400000) {
+                    diffText = diff.toDays() + " day(s)";
+                } else if (diff.toMillis() >= 3600000) {
+                    diffText = diff.toHours() + " hour(s)";
+                } else if (diff.toMillis() >= 60000) {
+                    diffText = diff.toMinutes() + " minute(s)";
+                } else {
+                    diffText = (diff.toMillis() / 1000) + " second(s)";
+                }
+                throw new PermFailException("Signature date is more than "
+                        + diffText + " in the future.", signatureRecord);
+            }
+        }
+        return signatureRecord;
+    }
+
+    /**
+     * Rejects the signatures which are well formed but cannot be verified,
+     * before their key is looked up: junk signatures cost no DNS query.
+     *
+     * @param sign the signature record
+     * @throws PermFailException if the signature cannot be verified
+     */
+    private void checkVerifiable(SignatureRecord sign)
+            throws PermFailException {
+        // same failures as the ones the signature checks would report.
+        if (!isSupportedCanonicalisation(sign.getHeaderCanonicalisationMethod())) {
+            throw new PermFailException("Unsupported canonicalization algorythm: "
+                    + sign.getHeaderCanonicalisationMethod());
+        }
+        if (!isSupportedCanonicalisation(sign.getBodyCanonicalisationMethod())) {
+            throw new PermFailException("Unsupported body canonicalization method: "
+                    + sign.getBodyCanonicalisationMethod(), sign);
+        }
+        if (!sign.getSigningAlgorithm().isPresent()
+                || !sign.getHashingMethod().isPresent()) {
+            throw new PermFailException("Unsupported algorythm: "
+                    + sign.getHashKeyType() + "-" + sign.getHashMethod(), sign);
+        }
+        try {
+            if (sign.getBodyHashLimit() < -1) {
+                throw new PermFailException("Invalid body length limit: "
+                        + sign.getBodyHashLimit(), sign);
+            }
+        } catch (NumberFormatException e) {
+            throw new PermFailException("Invalid body length limit: " + e.getMessage(), sign, e);
+        }
+        if (sign.getSignature().length == 0) {
+            throw new PermFailException("Empty signature", sign);
+        }
+
+        // the engines are pooled, so this only costs a lookup once warm.
+        CryptoEngines engines = options.getCryptoEngines();
+        String hashAlgorithm = sign.getHashAlgo().toString();
+        String algorithm = signatureAlgorithm(sign);
+        try {
+            MessageDigest md = engines.getMessageDigest(hashAlgorithm);
+            int digestLength = md.getDigestLength();
+            engines.releaseMessageDigest(hashAlgorithm, md);
+            if (sign.getBodyHash().length != digestLength) {
+                throw new PermFailException("Invalid body hash length: expected "
+                        + digestLength + " bytes for " + sign.getHashMethod(), sign);
+            }
+            engines.releaseSignature(algorithm, engines.getSignature(algorithm));
+        } catch (NoSuchAlgorithmException e) {
+            throw new PermFailException("Unsupported algorythm: " + e.getMessage(), sign, e);
+        }
+    }
+
+    private static boolean isSupportedCanonicalisation(String method) {
+        return SignatureRecord.SIMPLE.equals(method) || SignatureRecord.RELAXED.equals(method);
     }
 
     /**
@@ -390,32 +650,439 @@ public class DKIMVerifier {
      */
     private List<SignatureRecord> verify(CompoundBodyHasher compoundBodyHasher)
             throws FailException {
+        VerificationOutcome outcome = outcome(compoundBodyHasher);
+        result.addAll(outcome.getResults());
+
+        if (!outcome.hasAnyValidSignature()) {
+            throw prepareException(compoundBodyHasher.getSignatureExceptions());
+        } else {
+            return new LinkedList<>(outcome.getVerifiedSignatures());
+        }
+    }
+
+    /**
+     * Checks the computed body hashes and collects the results of all the
+     * signature checks.
+     *
+     * @param compoundBodyHasher the BodyHasher, with the body written and
+     *                           the outputstream closed.
+     * @return the outcome of the verification
+     */
+    private VerificationOutcome outcome(CompoundBodyHasher compoundBodyHasher) {
+        List<String> deferredFields = compoundBodyHasher instanceof DeferringBodyHasher
+                ? ((DeferringBodyHasher) compoundBodyHasher).deferredFields
+                : Collections.emptyList();
+        Map<String, FailException> signatureExceptions = compoundBodyHasher.getSignatureExceptions();
         List<SignatureRecord> verifiedSignatures = new LinkedList<>();
-        for (BodyHasherImpl bhj : compoundBodyHasher.getBodyHashJobs().values()) {
-            byte[] computedHash = bhj.getDigest();
-            byte[] expectedBodyHash = bhj.getSignatureRecord().getBodyHash();
-
-            if (!Arrays.equals(expectedBodyHash, computedHash)) {
-                compoundBodyHasher.getSignatureExceptions()
-                        .put(
-                                "DKIM-Signature:" + bhj.getSignatureRecord().toString(),
-                                new PermFailException(
-                                        "Computed bodyhash is different from the expected one", bhj.getSignatureRecord()));
-            } else {
-                verifiedSignatures.add(bhj.getSignatureRecord());
+        for (Map.Entry<String, BodyHasherImpl> job : compoundBodyHasher.getBodyHashJobs().entrySet()) {
+            if (!deferredFields.contains(job.getKey())) {
+                checkBodyHash(job.getValue(), verifiedSignatures, signatureExceptions);
             }
         }
 
-        for(SignatureRecord s: verifiedSignatures) {
-            result.add(new Result(s));
+        // the deferred signatures are checked, in order, until one is valid,
+        // the following ones are reported as not evaluated.
+        List<Result> notEvaluated = new ArrayList<>();
+        for (String signatureField : deferredFields) {
+            BodyHasherImpl bhj = compoundBodyHasher.getBodyHashJobs().get(signatureField);
+            SignatureRecord signatureRecord = bhj.getSignatureRecord();
+            if (!verifiedSignatures.isEmpty()) {
+                notEvaluated.add(notEvaluated(signatureField, signatureRecord));
+                continue;
+            }
+            try {
+                PublicKeyRecord publicKeyRecord = publicRecordLookup(signatureRecord);
+                signatureVerify(((DeferringBodyHasher) compoundBodyHasher).messageHeaders,
+                        signatureRecord, signatureRecord.getSignature(), publicKeyRecord,
+                        signatureRecord.getHeaders());
+            } catch (TempFailException | PermFailException e) {
+                signatureExceptions.put(signatureField, e);
+                continue;
+            } catch (RuntimeException e) {
+                signatureExceptions.put(signatureField, new PermFailException(
+                        "Unexpected exception processing signature", e));
+                continue;
+            }
+            checkBodyHash(bhj, verifiedSignatures, signatureExceptions);
         }
-        result.addAll(resultsFromExceptions(compoundBodyHasher.getSignatureExceptions()));
+        return outcome(verifiedSignatures, signatureExceptions, notEvaluated);
+    }
 
-        if (verifiedSignatures.isEmpty()) {
-            throw prepareException(compoundBodyHasher.getSignatureExceptions());
+    /**
+     * @return the result of a signature not checked by the
+     * {@link VerificationPolicy}, as another one was valid
+     */
+    private static Result notEvaluated(String signatureField, SignatureRecord signatureRecord) {
+        return new Result(NOT_EVALUATED, signatureField, signatureRecord, Result.Type.NONE);
+    }
+
+    private static void checkBodyHash(BodyHasherImpl bhj, List<SignatureRecord> verifiedSignatures,
+            Map<String, FailException> signatureExceptions) {
+        byte[] computedHash = bhj.getDigest();
+        byte[] expectedBodyHash = bhj.getSignatureRecord().getBodyHash();
+
+        if (!Arrays.equals(expectedBodyHash, computedHash)) {
+            signatureExceptions
+                    .put(
+                            "DKIM-Signature:" + bhj.getSignatureRecord().toString(),
+                            new PermFailException(
+                                    "Computed bodyhash is different from the expected one", bhj.getSignatureRecord()));
         } else {
-            return verifiedSignatures;
+            verifiedSignatures.add(bhj.getSignatureRecord());
+        }
+    }
+
+    private VerificationOutcome outcome(List<SignatureRecord> verifiedSignatures,
+            Map<String, FailException> signatureExceptions) {
+        return outcome(verifiedSignatures, signatureExceptions, Collections.emptyList());
+    }
+
+    private VerificationOutcome outcome(List<SignatureRecord> verifiedSignatures,
+            Map<String, FailException> signatureExceptions, List<Result> notEvaluated) {
+        List<Result> results = new ArrayList<>();
+        for (SignatureRecord s : verifiedSignatures) {
+            results.add(new Result(s));
+        }
+        results.addAll(resultsFromExceptions(signatureExceptions));
+        results.addAll(notEvaluated);
+        return new VerificationOutcome(verifiedSignatures, results);
+    }
+
+    /**
+     * Verifies all of the DKIM-Signature records declared in the supplied
+     * input stream, returning the results instead of collecting them in
+     * {@link #getResults()}.
+     * <p>
+     * This method keeps no state in the verifier, so a single instance can
+     * be shared by all the threads verifying messages.
+     *
+     * @param is inputStream, closed once read
+     * @return the results of all signature checks, success and fail
+     * @throws IOException       If error occurs handling data
+     * @throws PermFailException If the message cannot be parsed
+     */
+    public VerificationOutcome verifyMessage(InputStream is) throws IOException,
+            PermFailException {
+        Message message;
+        try {
+            try {
+                message = new Message(is);
+            } catch (RuntimeException | IOException e) {
+                throw e;
+            } catch (Exception e1) {
+                // This can only be a MimeException but we don't declare to allow usage of
+                // DKIMSigner without Mime4J dependency.
+                throw new PermFailException("Mime parsing exception: "
+                        + e1.getMessage(), e1);
+            }
+            try {
+                return verifyMessage(message, message.getBodyInputStream());
+            } finally {
+                message.dispose();
+            }
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Verifies all of the DKIM-Signature records declared in the Headers
+     * object, see {@link #verifyMessage(InputStream)}.
+     *
+     * @param messageHeaders  parsed headers
+     * @param bodyInputStream input stream for the body.
+     * @return the results of all signature checks, success and fail
+     * @throws IOException If error occurs handling data
+     */
+    public VerificationOutcome verifyMessage(Headers messageHeaders,
+            InputStream bodyInputStream) throws IOException {
+        List<String> fields = messageHeaders.getFields("DKIM-Signature");
+        if (fields == null || fields.isEmpty()) {
+            return new VerificationOutcome(Collections.emptyList(), Collections.emptyList());
+        }
+        CompoundBodyHasher cbh = newCompoundBodyHasher(messageHeaders, fields);
+        DKIMCommon.streamCopy(bodyInputStream, cbh.getOutputStream());
+        return outcome(cbh);
+    }
+
+    /**
+     * Asynchronously verifies all of the DKIM-Signature records declared in
+     * the supplied input stream.
+     * <p>
+     * The key lookups of every signature are started at once and run while
+     * the body is canonicalized and hashed. With a {@link VerificationPolicy}
+     * other than ALL the signatures are instead looked up and checked one
+     * at a time, in the order of the policy, until one is valid. Parsing,
+     * hashing and signature
+     * checks run on the given executor; lookups use the
+     * {@link AsyncPublicKeyRecordRetriever} configured in the
+     * {@link VerifierOptions} or, when missing, the blocking
+     * {@link PublicKeyRecordRetriever} on the same executor.
+     * <p>
+     * Unlike {@link #verify(InputStream)} this does not update
+     * {@link #getResults()}, so a single instance can verify many messages
+     * concurrently.
+     *
+     * @param is       inputStream, closed once read
+     * @param executor the executor running the verification steps
+     * @return the future results of all signature checks, success and fail;
+     *         empty when the message is not signed. The future completes
+     *         exceptionally with an IOException or a PermFailException
+     *         when the message cannot be read.
+     */
+    public CompletableFuture<List<Result>> verifyAsync(InputStream is, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                try {
+                    return new Message(is);
+                } finally {
+                    is.close();
+                }
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } catch (Exception e1) {
+                // This can only be a MimeException but we don't declare to allow usage of
+                // DKIMSigner without Mime4J dependency.
+                throw new CompletionException(new PermFailException("Mime parsing exception: "
+                        + e1.getMessage(), e1));
+            }
+        }, executor).thenCompose(message ->
+                verifyAsync(message, message.getBodyInputStream(), executor)
+                        .whenComplete((results, error) -> message.dispose()));
+    }
+
+    /**
+     * Asynchronously verifies all of the DKIM-Signature records declared in
+     * the Headers object, see {@link #verifyAsync(InputStream, Executor)}.
+     *
+     * @param messageHeaders  parsed headers
+     * @param bodyInputStream input stream for the body, closed once read
+     * @param executor        the executor running the verification steps
+     * @return the future results of all signature checks, success and fail
+     */
+    public CompletableFuture<List<Result>> verifyAsync(Headers messageHeaders,
+            InputStream bodyInputStream, Executor executor) {
+        List<String> fields = messageHeaders.getFields("DKIM-Signature");
+        if (fields == null || fields.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+
+        Map<String, BodyHasherImpl> bodyHashJobs = new HashMap<>();
+        Hashtable<String, FailException> signatureExceptions = new Hashtable<>();
+        Map<String, SignatureRecord> signatureRecords = new LinkedHashMap<>();
+        for (String signatureField : fields) {
+            try {
+                SignatureRecord signatureRecord = signatureRecordFromField(signatureField);
+                checkVerifiable(signatureRecord);
+                bodyHashJobs.put(signatureField, newBodyHasher(signatureRecord));
+                signatureRecords.put(signatureField, signatureRecord);
+            } catch (PermFailException e) {
+                signatureExceptions.put(signatureField, e);
+            } catch (RuntimeException e) {
+                signatureExceptions.put(signatureField, new PermFailException(
+                        "Unexpected exception processing signature", e));
+            }
+        }
+
+        VerificationPolicy policy = options.getVerificationPolicy();
+        Map<String, CompletableFuture<PublicKeyRecord>> lookups = new LinkedHashMap<>();
+        if (policy == VerificationPolicy.ALL) {
+            for (Map.Entry<String, SignatureRecord> signatureRecord : signatureRecords.entrySet()) {
+                lookups.put(signatureRecord.getKey(), publicRecordLookupAsync(signatureRecord.getValue(), executor));
+            }
+        }
+
+        // the body is hashed for every signature while the lookups are running.
+        CompoundBodyHasher cbh = new CompoundBodyHasher(bodyHashJobs, signatureExceptions,
+                options.getBodyHashExecutor());
+        CompletableFuture<Void> hashing = CompletableFuture.runAsync(() -> {
+            try {
+                DKIMCommon.streamCopy(bodyInputStream, cbh.getOutputStream());
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+
+        List<SignatureRecord> verifiedSignatures = new ArrayList<>();
+        if (policy != VerificationPolicy.ALL) {
+            // one signature at a time, until one is valid.
+            List<Result> notEvaluated = new ArrayList<>();
+            Iterator<String> orderedFields = orderedFields(messageHeaders, signatureRecords, policy).iterator();
+            return verifyInOrder(messageHeaders, orderedFields, bodyHashJobs, hashing,
+                    verifiedSignatures, signatureExceptions, notEvaluated, executor)
+                    .thenApply(ignored -> new ArrayList<>(
+                            outcome(verifiedSignatures, signatureExceptions, notEvaluated).getResults()));
+        }
+
+        // lookup failures are reported per signature, so we only wait for
+        // their completion.
+        CompletableFuture<?>[] pending = lookups.values().stream()
+                .map(f -> f.handle((key, error) -> null))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(pending).thenCombineAsync(hashing, (ignored, ignored2) -> {
+            for (Map.Entry<String, CompletableFuture<PublicKeyRecord>> lookup : lookups.entrySet()) {
+                verifyLookedUp(messageHeaders, lookup.getKey(), bodyHashJobs.get(lookup.getKey()),
+                        lookup.getValue(), verifiedSignatures, signatureExceptions);
+            }
+            return new ArrayList<>(outcome(verifiedSignatures, signatureExceptions).getResults());
+        }, executor);
+    }
+
+    /**
+     * Looks up and checks the signatures in the given order, the next one
+     * only once the previous one is known not to be valid. The ones
+     * following a valid signature are not evaluated.
+     */
+    private CompletableFuture<Void> verifyInOrder(Headers messageHeaders, Iterator<String> fields,
+            Map<String, BodyHasherImpl> bodyHashJobs, CompletableFuture<Void> hashing,
+            List<SignatureRecord> verifiedSignatures, Map<String, FailException> signatureExceptions,
+            List<Result> notEvaluated, Executor executor) {
+        if (!fields.hasNext()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String signatureField = fields.next();
+        BodyHasherImpl bhj = bodyHashJobs.get(signatureField);
+        CompletableFuture<PublicKeyRecord> lookup = publicRecordLookupAsync(bhj.getSignatureRecord(), executor);
+        return lookup.handle((key, error) -> null).thenCombineAsync(hashing, (ignored, ignored2) ->
+                verifyLookedUp(messageHeaders, signatureField, bhj, lookup, verifiedSignatures,
+                        signatureExceptions), executor)
+                .thenCompose(valid -> {
+                    if (!valid) {
+                        return verifyInOrder(messageHeaders, fields, bodyHashJobs, hashing,
+                                verifiedSignatures, signatureExceptions, notEvaluated, executor);
+                    }
+                    while (fields.hasNext()) {
+                        String field = fields.next();
+                        notEvaluated.add(notEvaluated(field, bodyHashJobs.get(field).getSignatureRecord()));
+                    }
+                    return CompletableFuture.completedFuture(null);
+                });
+    }
+
+    /**
+     * Checks a signature once its lookup is completed and the body hashed.
+     *
+     * @return true when the signature is valid
+     */
+    private boolean verifyLookedUp(Headers messageHeaders, String signatureField, BodyHasherImpl bhj,
+            CompletableFuture<PublicKeyRecord> lookup, List<SignatureRecord> verifiedSignatures,
+            Map<String, FailException> signatureExceptions) {
+        SignatureRecord signatureRecord = bhj.getSignatureRecord();
+        try {
+            PublicKeyRecord publicKeyRecord = joinLookup(lookup, signatureRecord);
+            signatureVerify(messageHeaders, signatureRecord, signatureRecord.getSignature(),
+                    publicKeyRecord, signatureRecord.getHeaders());
+        } catch (TempFailException | PermFailException e) {
+            signatureExceptions.put(signatureField, e);
+            return false;
+        } catch (RuntimeException e) {
+            signatureExceptions.put(signatureField, new PermFailException(
+                    "Unexpected exception processing signature", e));
+            return false;
         }
+        int verified = verifiedSignatures.size();
+        checkBodyHash(bhj, verifiedSignatures, signatureExceptions);
+        return verifiedSignatures.size() > verified;
+    }
+
+    private PublicKeyRecord joinLookup(CompletableFuture<PublicKeyRecord> lookup,
+            SignatureRecord sign) throws TempFailException, PermFailException {
+        try {
+            return lookup.join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof TempFailException) {
+                throw (TempFailException) cause;
+            } else if (cause instanceof PermFailException) {
+                throw (PermFailException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new PermFailException("Unexpected exception processing signature", sign, (Exception) cause);
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #publicRecordLookup(SignatureRecord)}.
+     *
+     * @param sign     the signature record
+     * @param executor runs the blocking lookup when no
+     *                 {@link AsyncPublicKeyRecordRetriever} is configured and
+     *                 the parsing of the retrieved records
+     * @return a future "applicable" PublicKeyRecord, completing exceptionally
+     *         with a TempFailException or PermFailException
+     */
+    public CompletableFuture<PublicKeyRecord> publicRecordLookupAsync(SignatureRecord sign,
+            Executor executor) {
+        AsyncPublicKeyRecordRetriever retriever = options.getAsyncPublicKeyRecordRetriever();
+        if (retriever == null) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return publicRecordLookup(sign);
+                } catch (TempFailException | PermFailException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        }
+        return publicRecordLookupAsync(retriever, sign, sign.getRecordLookupMethods().iterator(),
+                null, null, executor);
+    }
+
+    private CompletableFuture<PublicKeyRecord> publicRecordLookupAsync(
+            AsyncPublicKeyRecordRetriever retriever, SignatureRecord sign,
+            Iterator<CharSequence> methods, TempFailException lastTempFailure,
+            PermFailException lastPermFailure, Executor executor) {
+        if (!methods.hasNext()) {
+            FailException failure;
+            if (lastTempFailure != null) {
+                failure = lastTempFailure;
+            } else if (lastPermFailure != null) {
+                failure = lastPermFailure;
+            } else {
+                failure = new PermFailException("no key for signature [unexpected condition]");
+            }
+            failure.setRelatedRecord(sign);
+            CompletableFuture<PublicKeyRecord> failed = new CompletableFuture<>();
+            failed.completeExceptionally(failure);
+            return failed;
+        }
+
+        CharSequence method = methods.next();
+        CompletableFuture<List<String>> records;
+        try {
+            records = retriever.getRecordsAsync(method, sign.getSelector().toString(),
+                    sign.getDToken().toString());
+        } catch (RuntimeException e) {
+            records = new CompletableFuture<>();
+            records.completeExceptionally(e);
+        }
+        return records.handleAsync((list, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (cause == null) {
+                try {
+                    PublicKeyRecord key = publicKeySelector(list);
+                    // checks wether the key is applicable to the signature
+                    apply(key, sign);
+                    return CompletableFuture.completedFuture(key);
+                } catch (PermFailException pf) {
+                    cause = pf;
+                }
+            }
+            if (cause instanceof TempFailException) {
+                return publicRecordLookupAsync(retriever, sign, methods,
+                        (TempFailException) cause, lastPermFailure, executor);
+            } else if (cause instanceof PermFailException) {
+                return publicRecordLookupAsync(retriever, sign, methods,
+                        lastTempFailure, (PermFailException) cause, executor);
+            } else {
+                CompletableFuture<PublicKeyRecord> failed = new CompletableFuture<>();
+                failed.completeExceptionally(cause);
+                return failed;
+            }
+        }, executor).thenCompose(Function.identity());
     }
 
     /**
@@ -424,6 +1091,8 @@ public class DKIMVerifier {
      * be empty. Use {@link Result#getResultType} or {@link Result#isSuccess}
      * to get verification result of each DKIM-Signature check. Call {@link #resetResults}
      * if the same instance of {@code DKIMVerifier} is reused for a new {@code verify} call.
+     * The list is not thread safe: verifiers shared among threads should use
+     * {@link #verifyMessage(InputStream)} instead.
      *
      * @return List of {@link Result} object.
      */
@@ -508,10 +1177,10 @@ public class DKIMVerifier {
     private void signatureVerify(Headers h, SignatureRecord sign,
                                  byte[] decoded, PublicKeyRecord key, List<CharSequence> headers)
             throws PermFailException {
+        CryptoEngines engines = options.getCryptoEngines();
+        String algorithm = signatureAlgorithm(sign);
         try {
-            Signature signature = Signature.getInstance(sign.getHashMethod()
-                    .toString().toUpperCase()
-                    + "with" + sign.getHashKeyType().toString().toUpperCase());
+            Signature signature = engines.getSignature(algorithm);
             PublicKey publicKey;
             try {
                 publicKey = key.getPublicKey();
@@ -520,9 +1189,12 @@ public class DKIMVerifier {
             }
             signature.initVerify(publicKey);
 
-            signatureCheck(h, sign, headers, signature);
+            signatureCheck(h, sign, headers, signature, engines);
 
-            if (!signature.verify(decoded))
+            boolean verified = signature.verify(decoded);
+            // verify resets the signature, it can be reused.
+            engines.releaseSignature(algorithm, signature);
+            if (!verified)
                 throw new PermFailException("Header signature does not verify", sign);
         } catch (InvalidKeyException | NoSuchAlgorithmException | SignatureException e) {
             throw new PermFailException(e.getMessage(), sign, e);
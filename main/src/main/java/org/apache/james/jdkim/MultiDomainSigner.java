@@ -0,0 +1,105 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.jdkim;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.james.jdkim.api.SigningKey;
+import org.apache.james.jdkim.api.SigningKeyRegistry;
+import org.apache.james.jdkim.exceptions.FailException;
+import org.apache.james.jdkim.exceptions.PermFailException;
+import org.apache.james.jdkim.impl.CryptoEngines;
+
+/**
+ * Signs the messages of many domains, taking the key of each domain from a
+ * {@link SigningKeyRegistry}.
+ * <p>
+ * A {@link DKIMSigner} is kept for each domain, so the template of its
+ * key is parsed once and its Signature engines stay initialized. When the
+ * registry returns a different key after a rotation the signer of the
+ * domain is replaced; signing in progress keeps using the old one.
+ * This class is thread safe.
+ */
+public class MultiDomainSigner {
+
+    private final SigningKeyRegistry registry;
+    private final CryptoEngines engines;
+    private static class KeySigner {
+        private final SigningKey key;
+        private final DKIMSigner signer;
+
+        private KeySigner(SigningKey key, DKIMSigner signer) {
+            this.key = key;
+            this.signer = signer;
+        }
+    }
+
+    private final ConcurrentMap<String, KeySigner> signers = new ConcurrentHashMap<>();
+
+    public MultiDomainSigner(SigningKeyRegistry registry) {
+        this(registry, CryptoEngines.getDefault());
+    }
+
+    public MultiDomainSigner(SigningKeyRegistry registry, CryptoEngines engines) {
+        this.registry = registry;
+        this.engines = engines;
+    }
+
+    /**
+     * @param domain the signing domain
+     * @return the signer using the current key of the domain, null when the
+     *         domain has no key
+     * @throws IOException when the key cannot be loaded
+     */
+    public DKIMSigner getSigner(String domain) throws IOException {
+        SigningKey key = registry.getSigningKey(domain);
+        if (key == null) {
+            return null;
+        }
+        // the key is compared by value: registries without cache return a
+        // new instance for each call.
+        return signers.compute(domain.toLowerCase(Locale.US), (name, current) ->
+                current != null && current.key.equals(key) ? current
+                        : new KeySigner(key, new DKIMSigner(key.getTemplate(), key.getPrivateKey(), engines)))
+                .signer;
+    }
+
+    /**
+     * Signs a message with the current key of the domain.
+     *
+     * @param domain the signing domain
+     * @param is     the message, closed once read
+     * @return the DKIM-Signature field
+     * @throws IOException   If error occurs reading the message or the key
+     * @throws FailException if the domain has no key or the message cannot
+     *                       be signed
+     */
+    public String sign(String domain, InputStream is) throws IOException, FailException {
+        DKIMSigner signer = getSigner(domain);
+        if (signer == null) {
+            is.close();
+            throw new PermFailException("No signing key for domain " + domain);
+        }
+        return signer.sign(is);
+    }
+}
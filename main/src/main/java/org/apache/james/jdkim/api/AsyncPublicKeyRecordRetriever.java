@@ -0,0 +1,72 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jdkim.api;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non blocking counterpart of {@link PublicKeyRecordRetriever}, used by
+ * asynchronous verification to run all of the key lookups of a message
+ * concurrently.
+ */
+public interface AsyncPublicKeyRecordRetriever {
+
+    /**
+     * Starts a lookup and returns without waiting for the answer.
+     * <p>
+     * The returned future completes exceptionally with a
+     * {@link org.apache.james.jdkim.exceptions.TempFailException} in case of
+     * timeout and other network errors, or a
+     * {@link org.apache.james.jdkim.exceptions.PermFailException} in case of
+     * unsupported options.
+     *
+     * @param methodAndOption
+     *                the options declared for the lookup method.
+     * @param selector
+     *                the value of "s=" tag
+     * @param token
+     *                the value of the "d=" tag
+     * @return A future list of strings representing 0 to multiple records
+     */
+    CompletableFuture<List<String>> getRecordsAsync(CharSequence methodAndOption,
+            CharSequence selector, CharSequence token);
+
+    /**
+     * Same as {@link #getRecordsAsync(CharSequence, CharSequence, CharSequence)}
+     * but also reports how long the answer may be cached. Retrievers not
+     * knowing about expiration return a null ttl.
+     *
+     * @param methodAndOption
+     *                the options declared for the lookup method.
+     * @param selector
+     *                the value of "s=" tag
+     * @param token
+     *                the value of the "d=" tag
+     * @return the future records and their time to live
+     */
+    default CompletableFuture<TimedRecords> getTimedRecordsAsync(CharSequence methodAndOption,
+            CharSequence selector, CharSequence token) {
+        return getRecordsAsync(methodAndOption, selector, token)
+                .thenApply(records -> new TimedRecords(records, null));
+    }
+
+}
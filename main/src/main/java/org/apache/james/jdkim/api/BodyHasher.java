@@ -19,10 +19,29 @@
 
 package org.apache.james.jdkim.api;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.james.jdkim.canon.ByteBufferSink;
 
 public interface BodyHasher {
 
     OutputStream getOutputStream();
 
+    /**
+     * Writes the next bytes of the body, from the position to the limit of
+     * the buffer, e.g. straight from a network receive buffer while the
+     * message is still being received. Direct buffers are canonicalized in
+     * place, without being copied to the heap first. Like
+     * {@link #getOutputStream()}, the body is complete once that stream is
+     * closed.
+     *
+     * @param buffer the bytes, its position is then its limit
+     * @throws IOException on I/O errors
+     */
+    default void update(ByteBuffer buffer) throws IOException {
+        ByteBufferSink.write(getOutputStream(), buffer);
+    }
+
 }
\ No newline at end of file
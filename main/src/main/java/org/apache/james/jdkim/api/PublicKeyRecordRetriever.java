@@ -43,4 +43,27 @@ public interface PublicKeyRecordRetriever {
             CharSequence selector, CharSequence token)
             throws TempFailException, PermFailException;
 
+    /**
+     * Same as {@link #getRecords(CharSequence, CharSequence, CharSequence)}
+     * but also reports how long the answer may be cached. Retrievers not
+     * knowing about expiration return a null ttl.
+     *
+     * @param methodAndOption
+     *                the options declared for the lookup method.
+     * @param selector
+     *                the value of "s=" tag
+     * @param token
+     *                the value of the "d=" tag
+     * @return the records and their time to live
+     * @throws TempFailException
+     *                 in case of timeout and other network errors.
+     * @throws PermFailException
+     *                 in case of unsupported options
+     */
+    default TimedRecords getTimedRecords(CharSequence methodAndOption,
+            CharSequence selector, CharSequence token)
+            throws TempFailException, PermFailException {
+        return new TimedRecords(getRecords(methodAndOption, selector, token), null);
+    }
+
 }
@@ -112,7 +112,7 @@ public class Result {
                     reasonMsg = "valid signature";
                     break;
                 case NONE:
-                    reasonMsg = "unknown error";
+                    reasonMsg = errorMessage != null ? errorMessage : "unknown error";
                     break;
                 default:
                     reasonMsg = errorMessage != null ? errorMessage : "";
@@ -20,6 +20,7 @@
 package org.apache.james.jdkim.api;
 
 import java.util.List;
+import java.util.Optional;
 
 
 /**
@@ -44,6 +45,20 @@ public interface SignatureRecord {
 
     CharSequence getHashAlgo();
 
+    /**
+     * @return the key type of a=, empty when it is not supported
+     */
+    default Optional<SigningAlgorithm> getSigningAlgorithm() {
+        return SigningAlgorithm.of(getHashKeyType().toString());
+    }
+
+    /**
+     * @return the hash method of a=, empty when it is not supported
+     */
+    default Optional<HashMethod> getHashingMethod() {
+        return HashMethod.of(getHashMethod().toString());
+    }
+
     CharSequence getSelector();
 
     CharSequence getDToken();
@@ -30,6 +30,13 @@ public enum SigningAlgorithm {
             return hashMethod.name() + "with" + name();
         }
     }, // RFC 6376 https://datatracker.ietf.org/doc/html/rfc6376#section-3.3
+    ED25519 {
+        @Override
+        public String asJdkSignatureAlgorithm(HashMethod hashMethod) {
+            // the hash is computed before signing, see DKIMCommon.
+            return "Ed25519";
+        }
+    }, // RFC 8463 https://datatracker.ietf.org/doc/html/rfc8463, requires Java 15+
     ;
 
     public String asTagValue() {
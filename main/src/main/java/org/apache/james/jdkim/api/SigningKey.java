@@ -0,0 +1,83 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.jdkim.api;
+
+import java.security.PrivateKey;
+import java.util.Objects;
+
+/**
+ * The key a domain signs with: the selector publishing its public key, the
+ * DKIM-Signature template and the decoded private key. Instances are
+ * immutable, a key rotation produces a new instance. Keys are equal when
+ * all of their parts are, so a reloaded key is equal to the previous one
+ * as long as it was not rotated.
+ */
+public class SigningKey {
+    private final String domain;
+    private final String selector;
+    private final String template;
+    private final PrivateKey privateKey;
+
+    /**
+     * @param domain     the signing domain (d=)
+     * @param selector   the selector (s=)
+     * @param template   the DKIM-Signature template, including d= and s=
+     * @param privateKey the private key
+     */
+    public SigningKey(String domain, String selector, String template, PrivateKey privateKey) {
+        this.domain = domain;
+        this.selector = selector;
+        this.template = template;
+        this.privateKey = privateKey;
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public String getSelector() {
+        return selector;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public PrivateKey getPrivateKey() {
+        return privateKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SigningKey)) {
+            return false;
+        }
+        SigningKey other = (SigningKey) o;
+        return Objects.equals(domain, other.domain) && Objects.equals(selector, other.selector)
+                && Objects.equals(template, other.template) && Objects.equals(privateKey, other.privateKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(domain, selector, template);
+    }
+}
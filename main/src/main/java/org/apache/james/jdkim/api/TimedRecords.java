@@ -0,0 +1,59 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.api;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The records returned by a {@link PublicKeyRecordRetriever} together with
+ * the time they may be cached for, as declared by their source (e.g. the DNS
+ * TTL).
+ */
+public class TimedRecords {
+    private final List<String> records;
+    private final Duration ttl;
+
+    /**
+     * @param records
+     *                the retrieved records, may be null or empty.
+     * @param ttl
+     *                how long the records may be cached, null if unknown.
+     */
+    public TimedRecords(List<String> records, Duration ttl) {
+        this.records = records;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @return A list of strings representing 0 to multiple records
+     */
+    public List<String> getRecords() {
+        return records;
+    }
+
+    /**
+     * @return the time the records may be cached for, null if the source
+     *         does not tell.
+     */
+    public Duration getTtl() {
+        return ttl;
+    }
+}
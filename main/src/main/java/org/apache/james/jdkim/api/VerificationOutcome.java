@@ -0,0 +1,71 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of the verification of a message: the results of all of its
+ * signature checks. Instances are immutable, so they can be handed over to
+ * other threads.
+ */
+public class VerificationOutcome {
+    private final List<SignatureRecord> verifiedSignatures;
+    private final List<Result> results;
+
+    /**
+     * @param verifiedSignatures the valid signatures
+     * @param results            the results of all signature checks,
+     *                           success and fail
+     */
+    public VerificationOutcome(List<SignatureRecord> verifiedSignatures, List<Result> results) {
+        this.verifiedSignatures = Collections.unmodifiableList(new ArrayList<>(verifiedSignatures));
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+    }
+
+    /**
+     * Returns the results of all signature checks, success and fail. The list
+     * is empty when the message has no DKIM-Signature header.
+     *
+     * @return an unmodifiable list of {@link Result}
+     */
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * @return an unmodifiable list of the valid signatures
+     */
+    public List<SignatureRecord> getVerifiedSignatures() {
+        return verifiedSignatures;
+    }
+
+    /**
+     * Returns {@code true} if at least one signature is successfully verified.
+     * A message pass the DKIM check when at least one signature is valid.
+     *
+     * @return {@code true} if a valid signature is found
+     */
+    public boolean hasAnyValidSignature() {
+        return !verifiedSignatures.isEmpty();
+    }
+}
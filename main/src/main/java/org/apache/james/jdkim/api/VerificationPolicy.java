@@ -0,0 +1,49 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.api;
+
+/**
+ * Which DKIM-Signatures of a message the verifier checks.
+ * <p>
+ * A message passes the DKIM check when at least one signature is valid,
+ * so the policies other than {@link #ALL} stop checking signatures once
+ * one is valid: the remaining signatures need no key lookup and no
+ * signature operation. They are reported with a {@link Result.Type#NONE}
+ * result, not evaluated.
+ * <p>
+ * Asynchronous verification follows the policy too: unless it is ALL,
+ * lookups are no longer run concurrently but one signature at a time.
+ */
+public enum VerificationPolicy {
+    /**
+     * Every signature is checked, default.
+     */
+    ALL,
+    /**
+     * Stops at the first valid signature. Signatures with cheaper key types
+     * (ed25519) are checked first.
+     */
+    FIRST_PASS,
+    /**
+     * Same as {@link #FIRST_PASS} but the signatures of the From domain,
+     * then of its parent domains, are checked first.
+     */
+    PREFERRED_DOMAIN_FIRST
+}
@@ -19,23 +19,45 @@
 
 package org.apache.james.jdkim.api;
 
+import org.apache.james.jdkim.impl.CachingPublicKeyRecordRetriever;
+import org.apache.james.jdkim.impl.CryptoEngines;
 import org.apache.james.jdkim.impl.DNSPublicKeyRecordRetriever;
 import org.apache.james.jdkim.impl.MultiplexingPublicKeyRecordRetriever;
+import org.apache.james.jdkim.impl.PublicKeyRecordCache;
+import org.apache.james.jdkim.impl.SingleFlightPublicKeyRecordRetriever;
 import org.xbill.DNS.Lookup;
 import org.xbill.DNS.Resolver;
 
 import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public class VerifierOptions {
     private final Duration clockDriftTolerance;
     private final PublicKeyRecordRetriever publicKeyRecordRetriever;
     private final Resolver dnsResolver;
+    private final PublicKeyRecordCache publicKeyRecordCache;
+    private final AsyncPublicKeyRecordRetriever asyncPublicKeyRecordRetriever;
+    private final Executor bodyHashExecutor;
+    private final CryptoEngines cryptoEngines;
+    private final VerificationPolicy verificationPolicy;
 
     public static class Builder {
         private Duration clockDriftTolerance = Duration.ofSeconds(300);
         private Resolver dnsResolver = Lookup.getDefaultResolver();
         private PublicKeyRecordRetriever publicKeyRecordRetriever = new MultiplexingPublicKeyRecordRetriever(
                 "dns", new DNSPublicKeyRecordRetriever(this.dnsResolver));
+        private boolean lookupCoalescing = false;
+        private int lookupCacheSize = 0;
+        private Duration lookupCacheMaxTtl = Duration.ofHours(1);
+        private Duration lookupCacheNegativeTtl = Duration.ofMinutes(5);
+        private Duration lookupCacheTempFailTtl = Duration.ofSeconds(30);
+        private int publicKeyRecordCacheSize = 0;
+        private AsyncPublicKeyRecordRetriever asyncPublicKeyRecordRetriever;
+        private boolean parallelBodyHashing = false;
+        private Executor bodyHashExecutor = ForkJoinPool.commonPool();
+        private CryptoEngines cryptoEngines = CryptoEngines.getDefault();
+        private VerificationPolicy verificationPolicy = VerificationPolicy.ALL;
 
         /**
          * Sets the clock drift tolerance for signature verification, default is 300 seconds.
@@ -70,6 +92,140 @@ public class VerifierOptions {
             return this;
         }
 
+        /**
+         * Makes concurrent identical lookups share a single call to the
+         * PublicKeyRecordRetriever, default is false.
+         *
+         * @param lookupCoalescing true to coalesce in-flight lookups
+         * @return {@link Builder}
+         */
+        public Builder withLookupCoalescing(boolean lookupCoalescing) {
+            this.lookupCoalescing = lookupCoalescing;
+            return this;
+        }
+
+        /**
+         * Caches the answers of the PublicKeyRecordRetriever, default is 0
+         * meaning no cache.
+         *
+         * @param lookupCacheSize the maximum number of cached answers
+         * @return {@link Builder}
+         */
+        public Builder withLookupCacheSize(int lookupCacheSize) {
+            this.lookupCacheSize = lookupCacheSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time records are cached, default is 1 hour. This is
+         * also used when the retriever does not know the records ttl.
+         *
+         * @param lookupCacheMaxTtl a {@link Duration}
+         * @return {@link Builder}
+         */
+        public Builder withLookupCacheMaxTtl(Duration lookupCacheMaxTtl) {
+            this.lookupCacheMaxTtl = lookupCacheMaxTtl;
+            return this;
+        }
+
+        /**
+         * Sets the time empty answers (no record, NXDOMAIN) are cached,
+         * default is 5 minutes.
+         *
+         * @param lookupCacheNegativeTtl a {@link Duration}
+         * @return {@link Builder}
+         */
+        public Builder withLookupCacheNegativeTtl(Duration lookupCacheNegativeTtl) {
+            this.lookupCacheNegativeTtl = lookupCacheNegativeTtl;
+            return this;
+        }
+
+        /**
+         * Sets the time temporary failures are cached, default is 30 seconds.
+         *
+         * @param lookupCacheTempFailTtl a {@link Duration}
+         * @return {@link Builder}
+         */
+        public Builder withLookupCacheTempFailTtl(Duration lookupCacheTempFailTtl) {
+            this.lookupCacheTempFailTtl = lookupCacheTempFailTtl;
+            return this;
+        }
+
+        /**
+         * Caches the parsed public key records (with their decoded keys) by
+         * raw record, default is 0 meaning no cache.
+         *
+         * @param publicKeyRecordCacheSize the maximum number of cached records
+         * @return {@link Builder}
+         */
+        public Builder withPublicKeyRecordCacheSize(int publicKeyRecordCacheSize) {
+            this.publicKeyRecordCacheSize = publicKeyRecordCacheSize;
+            return this;
+        }
+
+        /**
+         * Sets the retriever used by asynchronous verification. When not set
+         * asynchronous verification runs the PublicKeyRecordRetriever on the
+         * supplied executor. The lookup coalescing and cache apply to both.
+         *
+         * @param asyncPublicKeyRecordRetriever a {@link AsyncPublicKeyRecordRetriever}
+         * @return {@link Builder}
+         */
+        public Builder withAsyncPublicKeyRecordRetriever(AsyncPublicKeyRecordRetriever asyncPublicKeyRecordRetriever) {
+            this.asyncPublicKeyRecordRetriever = asyncPublicKeyRecordRetriever;
+            return this;
+        }
+
+        /**
+         * Computes the body hashes of the signatures of a message in
+         * parallel, default is false. Signatures sharing the same body
+         * canonicalization, algorithm and limit still share a single hash.
+         *
+         * @param parallelBodyHashing true to hash in parallel
+         * @return {@link Builder}
+         */
+        public Builder withParallelBodyHashing(boolean parallelBodyHashing) {
+            this.parallelBodyHashing = parallelBodyHashing;
+            return this;
+        }
+
+        /**
+         * Sets the executor running the parallel body hashing, default is
+         * the common {@link ForkJoinPool}.
+         *
+         * @param bodyHashExecutor an {@link Executor}
+         * @return {@link Builder}
+         */
+        public Builder withBodyHashExecutor(Executor bodyHashExecutor) {
+            this.bodyHashExecutor = bodyHashExecutor;
+            return this;
+        }
+
+        /**
+         * Sets the supplier of the MessageDigest and Signature engines, to
+         * choose the security providers. The default providers are used if
+         * not set.
+         *
+         * @param cryptoEngines a {@link CryptoEngines}
+         * @return {@link Builder}
+         */
+        public Builder withCryptoEngines(CryptoEngines cryptoEngines) {
+            this.cryptoEngines = cryptoEngines;
+            return this;
+        }
+
+        /**
+         * Sets which signatures are checked, default is
+         * {@link VerificationPolicy#ALL}.
+         *
+         * @param verificationPolicy a {@link VerificationPolicy}
+         * @return {@link Builder}
+         */
+        public Builder withVerificationPolicy(VerificationPolicy verificationPolicy) {
+            this.verificationPolicy = verificationPolicy;
+            return this;
+        }
+
         public VerifierOptions build() {
             return new VerifierOptions(this);
         }
@@ -91,9 +247,62 @@ public class VerifierOptions {
             throw new IllegalArgumentException("dnsResolver can not be null");
         }
 
+        if (builder.lookupCacheSize < 0) {
+            throw new IllegalArgumentException("lookupCacheSize must not be negative");
+        }
+        if (builder.publicKeyRecordCacheSize < 0) {
+            throw new IllegalArgumentException("publicKeyRecordCacheSize must not be negative");
+        }
+        if (builder.bodyHashExecutor == null) {
+            throw new IllegalArgumentException("bodyHashExecutor can not be null");
+        }
+        if (builder.cryptoEngines == null) {
+            throw new IllegalArgumentException("cryptoEngines can not be null");
+        }
+        if (builder.verificationPolicy == null) {
+            throw new IllegalArgumentException("verificationPolicy can not be null");
+        }
+        checkTtl("lookupCacheMaxTtl", builder.lookupCacheMaxTtl);
+        checkTtl("lookupCacheNegativeTtl", builder.lookupCacheNegativeTtl);
+        checkTtl("lookupCacheTempFailTtl", builder.lookupCacheTempFailTtl);
+
         this.clockDriftTolerance = builder.clockDriftTolerance;
         this.dnsResolver = builder.dnsResolver;
-        this.publicKeyRecordRetriever = builder.publicKeyRecordRetriever;
+        // asynchronous lookups go through the same decorators, sharing the
+        // in-flight lookups and the cache with the blocking ones.
+        PublicKeyRecordRetriever retriever = builder.publicKeyRecordRetriever;
+        AsyncPublicKeyRecordRetriever asyncRetriever = builder.asyncPublicKeyRecordRetriever;
+        if (builder.lookupCoalescing) {
+            SingleFlightPublicKeyRecordRetriever singleFlight =
+                    new SingleFlightPublicKeyRecordRetriever(retriever, asyncRetriever);
+            retriever = singleFlight;
+            asyncRetriever = asyncRetriever != null ? singleFlight : null;
+        }
+        if (builder.lookupCacheSize > 0) {
+            // the cache answers first, so only misses are coalesced
+            CachingPublicKeyRecordRetriever caching = new CachingPublicKeyRecordRetriever(
+                    retriever, asyncRetriever, builder.lookupCacheSize,
+                    builder.lookupCacheMaxTtl, builder.lookupCacheNegativeTtl,
+                    builder.lookupCacheTempFailTtl);
+            retriever = caching;
+            asyncRetriever = asyncRetriever != null ? caching : null;
+        }
+        this.publicKeyRecordRetriever = retriever;
+        this.publicKeyRecordCache = builder.publicKeyRecordCacheSize > 0
+                ? new PublicKeyRecordCache(builder.publicKeyRecordCacheSize) : null;
+        this.asyncPublicKeyRecordRetriever = asyncRetriever;
+        this.bodyHashExecutor = builder.parallelBodyHashing ? builder.bodyHashExecutor : null;
+        this.cryptoEngines = builder.cryptoEngines;
+        this.verificationPolicy = builder.verificationPolicy;
+    }
+
+    private static void checkTtl(String name, Duration ttl) {
+        if (ttl == null) {
+            throw new IllegalArgumentException(name + " can not be null");
+        }
+        if (ttl.isNegative()) {
+            throw new IllegalArgumentException(name + " must not be negative");
+        }
     }
 
     /**
@@ -106,7 +315,10 @@ public class VerifierOptions {
     }
 
     /**
-     * Gets current PublicKeyRecordRetriever instance
+     * Gets current PublicKeyRecordRetriever instance, wrapped in a
+     * {@link SingleFlightPublicKeyRecordRetriever} when lookup coalescing is
+     * enabled and in a {@link CachingPublicKeyRecordRetriever} when a lookup
+     * cache is configured
      *
      * @return {@link PublicKeyRecordRetriever}
      */
@@ -122,4 +334,50 @@ public class VerifierOptions {
     public Resolver getDnsResolver() {
         return dnsResolver;
     }
+
+    /**
+     * Gets the cache of parsed public key records shared by the verifiers
+     * using these options
+     *
+     * @return {@link PublicKeyRecordCache} or null when disabled
+     */
+    public PublicKeyRecordCache getPublicKeyRecordCache() {
+        return publicKeyRecordCache;
+    }
+
+    /**
+     * Gets the retriever used by asynchronous verification
+     *
+     * @return {@link AsyncPublicKeyRecordRetriever} or null when not set
+     */
+    public AsyncPublicKeyRecordRetriever getAsyncPublicKeyRecordRetriever() {
+        return asyncPublicKeyRecordRetriever;
+    }
+
+    /**
+     * Gets the executor running the parallel body hashing
+     *
+     * @return {@link Executor} or null when parallel body hashing is disabled
+     */
+    public Executor getBodyHashExecutor() {
+        return bodyHashExecutor;
+    }
+
+    /**
+     * Gets the supplier of the MessageDigest and Signature engines
+     *
+     * @return {@link CryptoEngines}
+     */
+    public CryptoEngines getCryptoEngines() {
+        return cryptoEngines;
+    }
+
+    /**
+     * Gets which signatures are checked
+     *
+     * @return {@link VerificationPolicy}
+     */
+    public VerificationPolicy getVerificationPolicy() {
+        return verificationPolicy;
+    }
 }
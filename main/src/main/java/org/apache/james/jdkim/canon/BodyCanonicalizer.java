@@ -0,0 +1,370 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.canon;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Implements Simple and Relaxed canonicalization for the body as defined in
+ * RFC4871 - 3.4.3 and 3.4.4, and the body length limit (l= tag).
+ * <p>
+ * A single state machine runs over the written buffers: whitespace
+ * reduction (relaxed only), removal of the trailing empty lines and the
+ * limit are applied in one pass. Canonicalized bytes are collected in a
+ * staging buffer and handed to {@link #output(byte[], int, int)} in large
+ * chunks, when the buffer is full, on flush and on close.
+ * <p>
+ * Runs of plain content are copied as they are, and are skipped 8 bytes at
+ * a time by testing a whole long for bytes needing attention. Direct
+ * buffers written with {@link #write(ByteBuffer)} are scanned in place the
+ * same way.
+ */
+public abstract class BodyCanonicalizer extends OutputStream implements ByteBufferSink {
+
+    private static final int STAGING_SIZE = 8192;
+
+    private static final VarHandle LONG_VIEW =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long SPACES = ONES * ' ';
+    private static final long CRS = ONES * '\r';
+    private static final long LFS = ONES * '\n';
+
+    private final boolean relaxed;
+    // bare CRs and LFs are line endings, see convertLineEndings().
+    private boolean lineEndingConversion;
+    // canonicalized bytes still allowed by the limit.
+    private long remaining;
+
+    private final byte[] staging = new byte[STAGING_SIZE];
+    private int staged;
+
+    // whitespace not yet written, reduced to a single space.
+    private boolean pendingSpaces;
+    // a CR not yet known to be part of a CRLF.
+    private boolean pendingCR;
+    // CRLFs not yet written as they may end the body.
+    private int countCRLF;
+
+    private boolean closed;
+
+    private final byte[] single = new byte[1];
+
+    /**
+     * @param relaxed true for the "relaxed" algorithm, false for "simple"
+     * @param limit   the maximum number of canonicalized bytes, -1 for no
+     *                limit
+     */
+    protected BodyCanonicalizer(boolean relaxed, long limit) {
+        this.relaxed = relaxed;
+        this.remaining = limit == -1 ? Long.MAX_VALUE : limit;
+    }
+
+    /**
+     * Receives the canonicalized body.
+     *
+     * @param b   the data
+     * @param off the start offset in the data
+     * @param len the number of bytes to output
+     * @throws IOException if the output fails
+     */
+    protected abstract void output(byte[] b, int off, int len) throws IOException;
+
+    public void write(byte[] buffer, int off, int len) throws IOException {
+        if (remaining == 0) {
+            // nothing else can be part of the canonicalized body.
+            return;
+        }
+        int end = off + len;
+        // start of the content not yet staged.
+        int start = off;
+        int k = off;
+        while (k < end) {
+            if (!pendingSpaces && !pendingCR && countCRLF == 0) {
+                while (k + 8 <= end && isPlain((long) LONG_VIEW.get(buffer, k))) {
+                    k += 8;
+                }
+                if (k == end) {
+                    break;
+                }
+            }
+            byte b = buffer[k];
+            if (isHeldBack(b, k + 1 < end && isContent(buffer[k + 1]))) {
+                stage(buffer, start, k - start);
+                start = k + 1;
+                holdBack(b);
+            } else {
+                // content, including single spaces followed by content.
+                stagePending();
+            }
+            k++;
+        }
+        stage(buffer, start, end - start);
+    }
+
+    /**
+     * Same as {@link #write(byte[], int, int)}. Buffers backed by an array
+     * are written from it, direct buffers are read in place: only the
+     * canonicalized bytes are copied, to the staging buffer.
+     */
+    public void write(ByteBuffer src) throws IOException {
+        if (src.hasArray()) {
+            write(src.array(), src.arrayOffset() + src.position(), src.remaining());
+            src.position(src.limit());
+            return;
+        }
+        int end = src.limit();
+        if (remaining != 0) {
+            // absolute reads, the longs in the same order as on arrays.
+            ByteBuffer buffer = src.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            int start = src.position();
+            int k = start;
+            while (k < end) {
+                if (!pendingSpaces && !pendingCR && countCRLF == 0) {
+                    while (k + 8 <= end && isPlain(buffer.getLong(k))) {
+                        k += 8;
+                    }
+                    if (k == end) {
+                        break;
+                    }
+                }
+                byte b = buffer.get(k);
+                if (isHeldBack(b, k + 1 < end && isContent(buffer.get(k + 1)))) {
+                    stage(buffer, start, k - start);
+                    start = k + 1;
+                    holdBack(b);
+                } else {
+                    stagePending();
+                }
+                k++;
+            }
+            stage(buffer, start, end - start);
+        }
+        src.position(end);
+    }
+
+    /**
+     * Makes the bare CRs and LFs written from now on line endings, as if
+     * they were CRLFs. Otherwise they are content, as RFC4871 reads them.
+     *
+     * @return true
+     */
+    public boolean convertLineEndings() {
+        lineEndingConversion = true;
+        return true;
+    }
+
+    /**
+     * @return true when b is not staged as it is: CRs, the LFs ending a
+     * line and, in relaxed mode, whitespace to be dropped or reduced.
+     */
+    private boolean isHeldBack(byte b, boolean followedByContent) {
+        return b == '\r' || (b == '\n' && (pendingCR || lineEndingConversion))
+                || (relaxed && (b == ' ' || b == '\t')
+                        && (pendingSpaces || b == '\t' || !followedByContent));
+    }
+
+    /**
+     * Records a byte for which {@link #isHeldBack(byte, boolean)} is true.
+     */
+    private void holdBack(byte b) throws IOException {
+        if (b == '\r') {
+            // whitespace at the end of a line is dropped.
+            pendingSpaces = false;
+            if (pendingCR) {
+                endBareCR();
+            }
+            pendingCR = true;
+        } else if (b == '\n') {
+            // a CRLF, or a bare LF when converting line endings.
+            pendingSpaces = false;
+            pendingCR = false;
+            countCRLF++;
+        } else {
+            if (pendingCR) {
+                endBareCR();
+            }
+            pendingSpaces = true;
+        }
+    }
+
+    /**
+     * Handles a CR found not to be followed by a LF.
+     */
+    private void endBareCR() throws IOException {
+        if (lineEndingConversion) {
+            // a line ending, which may still end the body.
+            pendingCR = false;
+            countCRLF++;
+        } else {
+            // content, and so is what was held back before it.
+            stagePending();
+        }
+    }
+
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    /**
+     * Outputs the staged bytes. Bytes held back because they may be part of
+     * trailing whitespace or empty lines are not output.
+     */
+    public void flush() throws IOException {
+        if (staged > 0) {
+            output(staging, 0, staged);
+            staged = 0;
+        }
+    }
+
+    /**
+     * Completes the canonicalized body with its ending CRLF and outputs it.
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (pendingSpaces) {
+            stagePending();
+        }
+        // trailing CRLFs, or a trailing CR, are reduced to a single CRLF.
+        stageByte('\r');
+        stageByte('\n');
+        pendingCR = false;
+        countCRLF = 0;
+        flush();
+    }
+
+    /**
+     * Stages the CRLFs, CR and whitespace held back so far: some content is
+     * about to follow them.
+     */
+    private void stagePending() throws IOException {
+        if (pendingCR && lineEndingConversion) {
+            pendingCR = false;
+            countCRLF++;
+        }
+        while (countCRLF > 0) {
+            stageByte('\r');
+            stageByte('\n');
+            countCRLF--;
+        }
+        if (pendingCR) {
+            stageByte('\r');
+            pendingCR = false;
+        }
+        if (pendingSpaces) {
+            stageByte(' ');
+            pendingSpaces = false;
+        }
+    }
+
+    private void stageByte(int b) throws IOException {
+        if (remaining == 0) {
+            return;
+        }
+        remaining--;
+        if (staged == STAGING_SIZE) {
+            flush();
+        }
+        staging[staged++] = (byte) b;
+    }
+
+    private void stage(byte[] b, int off, int len) throws IOException {
+        if (len > remaining) {
+            len = (int) remaining;
+        }
+        if (len <= 0) {
+            return;
+        }
+        remaining -= len;
+        if (len > STAGING_SIZE - staged) {
+            flush();
+            if (len >= STAGING_SIZE) {
+                output(b, off, len);
+                return;
+            }
+        }
+        System.arraycopy(b, off, staging, staged, len);
+        staged += len;
+    }
+
+    private void stage(ByteBuffer b, int off, int len) throws IOException {
+        if (len > remaining) {
+            len = (int) remaining;
+        }
+        if (len <= 0) {
+            return;
+        }
+        remaining -= len;
+        b.position(off);
+        while (len > 0) {
+            if (staged == STAGING_SIZE) {
+                flush();
+            }
+            int count = Math.min(len, STAGING_SIZE - staged);
+            b.get(staging, staged, count);
+            staged += count;
+            len -= count;
+        }
+    }
+
+    private boolean isContent(byte b) {
+        return b != ' ' && b != '\t' && b != '\r' && (b != '\n' || !lineEndingConversion);
+    }
+
+    /**
+     * @return true when the 8 bytes can be staged unchanged: no CR, no LF
+     * when converting line endings, and in relaxed mode no control char, no
+     * consecutive spaces and no space as the last byte (its follower is
+     * unknown).
+     */
+    private boolean isPlain(long word) {
+        if (!relaxed) {
+            return !hasZeroByte(word ^ CRS)
+                    && !(lineEndingConversion && hasZeroByte(word ^ LFS));
+        }
+        long controls = (word - ONES * 0x20) & ~word & HIGH_BITS;
+        long spaces = zeroBytes(word ^ SPACES);
+        return (controls | (spaces & (spaces >>> 8)) | (spaces & Long.MIN_VALUE)) == 0;
+    }
+
+    private static boolean hasZeroByte(long word) {
+        return ((word - ONES) & ~word & HIGH_BITS) != 0;
+    }
+
+    /**
+     * @return a mask with the high bit set exactly for the zero bytes
+     */
+    private static long zeroBytes(long word) {
+        return ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+    }
+
+}
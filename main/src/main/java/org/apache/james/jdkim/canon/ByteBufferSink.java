@@ -0,0 +1,80 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.canon;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An output stream consuming NIO buffers as they are, direct ones
+ * included, instead of requiring them to be copied to a byte array first.
+ */
+public interface ByteBufferSink {
+
+    /**
+     * Writes the bytes from the position to the limit of src. The position
+     * of src is then its limit.
+     *
+     * @param src the bytes to write
+     * @throws IOException on I/O errors
+     */
+    void write(ByteBuffer src) throws IOException;
+
+    /**
+     * Asks this sink to read the bare CRs and LFs written from now on as
+     * CRLFs, the conversion the stream based parsers apply to the body. It
+     * is meant to be called before anything is written.
+     * <p>
+     * The conversion leaves CRLF terminated data unchanged, so a caller
+     * converting the data itself anyway is harmless.
+     *
+     * @return true when the sink converts the line endings, false when the
+     * caller has to do it
+     */
+    default boolean convertLineEndings() {
+        return false;
+    }
+
+    /**
+     * Writes a buffer to any output stream: a {@link ByteBufferSink}
+     * consumes it directly, other streams receive the backing array or, for
+     * direct buffers, copies of it.
+     *
+     * @param out the target stream
+     * @param src the bytes to write, its position is then its limit
+     * @throws IOException on I/O errors
+     */
+    static void write(OutputStream out, ByteBuffer src) throws IOException {
+        if (out instanceof ByteBufferSink) {
+            ((ByteBufferSink) out).write(src);
+        } else if (src.hasArray()) {
+            out.write(src.array(), src.arrayOffset() + src.position(), src.remaining());
+            src.position(src.limit());
+        } else {
+            byte[] chunk = new byte[Math.min(src.remaining(), 8192)];
+            while (src.hasRemaining()) {
+                int count = Math.min(chunk.length, src.remaining());
+                src.get(chunk, 0, count);
+                out.write(chunk, 0, count);
+            }
+        }
+    }
+}
@@ -21,9 +21,10 @@ package org.apache.james.jdkim.canon;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 
-public class CompoundOutputStream extends OutputStream {
+public class CompoundOutputStream extends OutputStream implements ByteBufferSink {
 
     final List<? extends OutputStream> outputStreams;
 
@@ -51,4 +52,23 @@ public class CompoundOutputStream extends OutputStream {
         for (OutputStream outputStream : outputStreams) outputStream.write(b);
     }
 
+    public void write(ByteBuffer src) throws IOException {
+        for (OutputStream outputStream : outputStreams) ByteBufferSink.write(outputStream, src.duplicate());
+        src.position(src.limit());
+    }
+
+    /**
+     * Asks every target to convert the line endings.
+     *
+     * @return true when all of them do
+     */
+    public boolean convertLineEndings() {
+        boolean all = true;
+        for (OutputStream outputStream : outputStreams) {
+            all &= outputStream instanceof ByteBufferSink
+                    && ((ByteBufferSink) outputStream).convertLineEndings();
+        }
+        return all;
+    }
+
 }
@@ -0,0 +1,206 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jdkim.canon;
+
+import java.util.Arrays;
+
+/**
+ * Implements Simple and Relaxed canonicalization for headers as defined in
+ * RFC4871 - 3.4.1 and 3.4.2.
+ * <p>
+ * Canonicalized headers are appended to an internal buffer, reused across
+ * calls, working directly on chars: no regular expression and no
+ * intermediate String is involved. Headers containing non ASCII chars are
+ * rare and handled by a String based fallback encoding them with the
+ * platform charset, as jDKIM always did.
+ * <p>
+ * Instances are not thread safe.
+ */
+public class HeaderCanonicalizer {
+
+    private static final int INITIAL_SIZE = 1024;
+
+    private byte[] buffer = new byte[INITIAL_SIZE];
+    private int length;
+
+    /**
+     * Appends the header field using the "relaxed" algorithm: lowercased
+     * name, unfolded value with whitespace runs collapsed to a single space
+     * and trimmed.
+     *
+     * @param name  the header name, as found in h=
+     * @param field the complete header field "Name: value"
+     */
+    public void appendRelaxed(CharSequence name, CharSequence field) {
+        if (!isAscii(name) || !isAscii(field)) {
+            appendLegacyRelaxed(name, field);
+            return;
+        }
+        int nameLength = name.length();
+        ensureCapacity(nameLength + 1 + field.length());
+        byte[] b = buffer;
+        int p = length;
+        for (int i = 0; i < nameLength; i++) {
+            char c = name.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            b[p++] = (byte) c;
+        }
+        b[p++] = ':';
+
+        int valueStart = p;
+        int end = field.length();
+        int i = indexOf(field, ':') + 1;
+        boolean pendingSpace = false;
+        while (i < end) {
+            char c = field.charAt(i);
+            if (c == ' ' || c == '\t') {
+                pendingSpace = true;
+                i++;
+            } else if (c == '\r' && i + 2 < end && field.charAt(i + 1) == '\n'
+                    && (field.charAt(i + 2) == ' ' || field.charAt(i + 2) == '\t')) {
+                // unfolding: CRLF followed by WSP is part of the whitespace run
+                pendingSpace = true;
+                i += 3;
+            } else {
+                if (pendingSpace) {
+                    b[p++] = ' ';
+                    pendingSpace = false;
+                }
+                b[p++] = (byte) c;
+                i++;
+            }
+        }
+        // trailing whitespace is dropped by not writing the pending space,
+        // now trim any other leading and trailing control char.
+        int first = valueStart;
+        while (first < p && (b[first] & 0xff) <= ' ') {
+            first++;
+        }
+        while (p > first && (b[p - 1] & 0xff) <= ' ') {
+            p--;
+        }
+        if (first > valueStart) {
+            System.arraycopy(b, first, b, valueStart, p - first);
+            p -= first - valueStart;
+        }
+        length = p;
+    }
+
+    /**
+     * Appends the header field unchanged, the "simple" algorithm.
+     *
+     * @param field the complete header field "Name: value"
+     */
+    public void appendSimple(CharSequence field) {
+        if (!isAscii(field)) {
+            append(field.toString().getBytes());
+            return;
+        }
+        int end = field.length();
+        ensureCapacity(end);
+        byte[] b = buffer;
+        int p = length;
+        for (int i = 0; i < end; i++) {
+            b[p++] = (byte) field.charAt(i);
+        }
+        length = p;
+    }
+
+    /**
+     * Appends a CRLF, terminating the previously appended header.
+     */
+    public void appendCRLF() {
+        ensureCapacity(2);
+        buffer[length++] = '\r';
+        buffer[length++] = '\n';
+    }
+
+    /**
+     * @return the internal buffer, valid from 0 to {@link #getLength()}
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the number of bytes appended since the last reset
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Discards the appended bytes, keeping the buffer for reuse. Buffers
+     * grown above maxRetainedSize are released.
+     *
+     * @param maxRetainedSize the maximum size of the kept buffer
+     */
+    public void reset(int maxRetainedSize) {
+        length = 0;
+        if (buffer.length > maxRetainedSize) {
+            buffer = new byte[INITIAL_SIZE];
+        }
+    }
+
+    private void appendLegacyRelaxed(CharSequence name, CharSequence field) {
+        append(name.toString().toLowerCase().getBytes());
+        append(new byte[] { ':' });
+        String fv = field.toString();
+        String headerValue = fv.substring(fv.indexOf(':') + 1);
+        headerValue = headerValue.replaceAll("\r\n[\t ]", " ");
+        headerValue = headerValue.replaceAll("[\t ]+", " ");
+        headerValue = headerValue.trim();
+        append(headerValue.getBytes());
+    }
+
+    private void append(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensureCapacity(int additional) {
+        int required = length + additional;
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+        }
+    }
+
+    private static int indexOf(CharSequence cs, char c) {
+        for (int i = 0; i < cs.length(); i++) {
+            if (cs.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isAscii(CharSequence cs) {
+        for (int i = 0; i < cs.length(); i++) {
+            if (cs.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
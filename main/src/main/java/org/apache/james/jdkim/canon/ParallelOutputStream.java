@@ -0,0 +1,283 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.canon;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Like {@link CompoundOutputStream} but the target streams are written by
+ * tasks run on an {@link Executor}, so writing costs as much as the slowest
+ * target instead of the sum of all of them.
+ * <p>
+ * Written bytes are copied to the chunks of a bounded ring, each target
+ * consuming them in order. The writer only blocks when the ring is full and
+ * on {@link #close()}, which waits for every target to consume the whole
+ * input and then closes them. While blocked the writer drains the lagging
+ * targets itself when no task is doing it, so this works on any executor,
+ * even a saturated one.
+ * <p>
+ * The targets are closed by the writer thread and must not be used
+ * directly while this stream is open. This stream is not thread safe.
+ */
+public class ParallelOutputStream extends OutputStream implements ByteBufferSink {
+
+    private static final int DEFAULT_CHUNKS = 8;
+    private static final int DEFAULT_CHUNK_SIZE = 16384;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Executor executor;
+    private final byte[][] chunks;
+    private final int[] lengths;
+    private final List<Consumer> consumers;
+    private final byte[] single = new byte[1];
+
+    // number of chunks made available to the consumers.
+    private volatile long published;
+    // the thread waiting for the consumers, unparked by them.
+    private volatile Thread writer;
+    private int position;
+    private boolean closed;
+
+    public ParallelOutputStream(List<? extends OutputStream> outputStreams, Executor executor) {
+        this(outputStreams, executor, DEFAULT_CHUNKS, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param outputStreams the target streams
+     * @param executor      runs the tasks writing to the targets
+     * @param chunks        the number of chunks in the ring
+     * @param chunkSize     the size of each chunk
+     */
+    public ParallelOutputStream(List<? extends OutputStream> outputStreams, Executor executor,
+            int chunks, int chunkSize) {
+        if (chunks < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("chunks and chunkSize must be positive");
+        }
+        this.executor = executor;
+        this.chunks = new byte[chunks][chunkSize];
+        this.lengths = new int[chunks];
+        this.consumers = new ArrayList<>(outputStreams.size());
+        for (OutputStream outputStream : outputStreams) {
+            consumers.add(new Consumer(outputStream));
+        }
+    }
+
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (len > 0) {
+            if (position == 0) {
+                // the chunk is free once every consumer went past it.
+                awaitConsumed(published - chunks.length + 1);
+            }
+            byte[] chunk = chunks[(int) (published % chunks.length)];
+            int count = Math.min(len, chunk.length - position);
+            System.arraycopy(b, off, chunk, position, count);
+            position += count;
+            off += count;
+            len -= count;
+            if (position == chunk.length) {
+                publish();
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #write(byte[], int, int)}, the bytes being copied from
+     * the buffer straight to the chunks.
+     */
+    public void write(ByteBuffer src) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (src.hasRemaining()) {
+            if (position == 0) {
+                awaitConsumed(published - chunks.length + 1);
+            }
+            byte[] chunk = chunks[(int) (published % chunks.length)];
+            int count = Math.min(src.remaining(), chunk.length - position);
+            src.get(chunk, position, count);
+            position += count;
+            if (position == chunk.length) {
+                publish();
+            }
+        }
+    }
+
+    /**
+     * Asks every target to convert the line endings, before anything is
+     * written so that no task is using them.
+     *
+     * @return true when all of them do
+     */
+    public boolean convertLineEndings() {
+        boolean all = true;
+        for (Consumer consumer : consumers) {
+            all &= consumer.out instanceof ByteBufferSink
+                    && ((ByteBufferSink) consumer.out).convertLineEndings();
+        }
+        return all;
+    }
+
+    /**
+     * Hands the pending bytes to the consumers, without waiting for them.
+     */
+    public void flush() throws IOException {
+        if (position > 0) {
+            publish();
+        }
+    }
+
+    /**
+     * Waits for every target to consume the input, then closes them.
+     *
+     * @throws IOException the first exception thrown by a target
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        flush();
+        awaitConsumed(published);
+        closed = true;
+        IOException failure = null;
+        for (Consumer consumer : consumers) {
+            if (consumer.failure == null) {
+                try {
+                    consumer.out.close();
+                } catch (IOException | RuntimeException e) {
+                    consumer.failure = e;
+                }
+            }
+            if (failure == null && consumer.failure != null) {
+                failure = consumer.failure instanceof IOException ? (IOException) consumer.failure
+                        : new IOException(consumer.failure);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void publish() {
+        lengths[(int) (published % chunks.length)] = position;
+        position = 0;
+        published++;
+        for (Consumer consumer : consumers) {
+            consumer.schedule();
+        }
+    }
+
+    private void awaitConsumed(long sequence) throws IOException {
+        writer = Thread.currentThread();
+        for (Consumer consumer : consumers) {
+            while (consumer.consumed < sequence) {
+                if (!consumer.drain()) {
+                    // a task is on it, it unparks us after each chunk.
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedIOException("Interrupted while hashing the body");
+                    }
+                }
+            }
+        }
+    }
+
+    private final class Consumer implements Runnable {
+
+        private final OutputStream out;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long consumed;
+        private volatile Exception failure;
+
+        Consumer(OutputStream out) {
+            this.out = out;
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // the writer drains it when needed.
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        public void run() {
+            scheduled.set(false);
+            drain();
+        }
+
+        /**
+         * Writes the published chunks to the target.
+         *
+         * @return false when another thread is already doing it
+         */
+        boolean drain() {
+            do {
+                if (!lock.tryLock()) {
+                    return false;
+                }
+                try {
+                    while (consumed < published) {
+                        int index = (int) (consumed % chunks.length);
+                        if (failure == null) {
+                            try {
+                                out.write(chunks[index], 0, lengths[index]);
+                            } catch (IOException | RuntimeException e) {
+                                // keeps consuming so the writer is not blocked.
+                                failure = e;
+                            }
+                        }
+                        consumed++;
+                        Thread waiting = writer;
+                        if (waiting != null) {
+                            LockSupport.unpark(waiting);
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                // a chunk published while we were leaving is ours.
+            } while (consumed < published);
+            return true;
+        }
+    }
+}
@@ -26,75 +26,39 @@ import java.io.OutputStream;
 /**
  * Implements Relaxed canonicalization for the body as defined in RFC4871 -
  * 3.4.4. The "relaxed" Body Canonicalization Algorithm
+ * <p>
+ * Stream wrapper over a {@link BodyCanonicalizer}, writing the
+ * canonicalized body to the underlying stream.
  */
 public class RelaxedBodyCanonicalizer extends FilterOutputStream {
 
-    private boolean pendingSpaces;
+    private final BodyCanonicalizer canonicalizer;
 
     public RelaxedBodyCanonicalizer(OutputStream out) {
-        super(new SimpleBodyCanonicalizer(out));
-        pendingSpaces = false;
+        super(out);
+        canonicalizer = new BodyCanonicalizer(true, -1) {
+            protected void output(byte[] b, int off, int len) throws IOException {
+                RelaxedBodyCanonicalizer.this.out.write(b, off, len);
+            }
+        };
     }
 
-    public void write(byte[] buffer, int off, int len) throws IOException {
-        int start = off;
-        int end = len + off;
-        for (int k = off; k < end; k++) {
-            if (pendingSpaces) {
-                if (buffer[k] != ' ' && buffer[k] != '\t') {
-                    if (buffer[k] != '\r')
-                        out.write(' ');
-                    pendingSpaces = false;
-                    len = len - k + start;
-                    start = k;
-                }
-            } else {
-                if (buffer[k] == ' ' || buffer[k] == '\t') {
-                    if (k + 1 < end && buffer[k] == ' ' && buffer[k + 1] != ' '
-                            && buffer[k + 1] != '\t' && buffer[k + 1] != '\r') {
-                        // optimization: we skip single spaces
-                        // make sure we optimize only when we are on a space.
-                    } else {
-                        // compute everything from start to end;
-                        out.write(buffer, start, k - start);
-                        pendingSpaces = true;
-                    }
-                }
-            }
-        }
-        if (!pendingSpaces) {
-            out.write(buffer, start, len);
-        }
+    public void write(byte[] b, int off, int len) throws IOException {
+        canonicalizer.write(b, off, len);
     }
 
     public void write(int b) throws IOException {
-        if (pendingSpaces) {
-            if (b != ' ' && b != '\t') {
-                if (b != '\r')
-                    out.write(' ');
-                pendingSpaces = false;
-                out.write(b);
-            }
-        } else {
-            if (b == ' ' || b == '\t') {
-                pendingSpaces = true;
-            } else {
-                out.write(b);
-            }
-        }
+        canonicalizer.write(b);
     }
 
-    public void close() throws IOException {
-        complete();
-        super.close();
+    public void flush() throws IOException {
+        canonicalizer.flush();
+        super.flush();
     }
 
-    /**
-     * Called internally to make sure we output the buffered whitespace if any.
-     */
-    private void complete() throws IOException {
-        if (pendingSpaces)
-            out.write(' ');
+    public void close() throws IOException {
+        canonicalizer.close();
+        super.close();
     }
 
-}
\ No newline at end of file
+}
@@ -26,102 +26,39 @@ import java.io.OutputStream;
 /**
  * Implements Simple canonicalization for the body as defined in RFC4871 -
  * 3.4.3. The "simple" Body Canonicalization Algorithm
+ * <p>
+ * Stream wrapper over a {@link BodyCanonicalizer}, writing the
+ * canonicalized body to the underlying stream.
  */
 public class SimpleBodyCanonicalizer extends FilterOutputStream {
 
-    private static final boolean DEEP_DEBUG = false;
+    private final BodyCanonicalizer canonicalizer;
 
-    private boolean lastWasCR;
-    private int countCRLF;
-
-    public SimpleBodyCanonicalizer(OutputStream arg0) {
-        super(arg0);
+    public SimpleBodyCanonicalizer(OutputStream out) {
+        super(out);
+        canonicalizer = new BodyCanonicalizer(false, -1) {
+            protected void output(byte[] b, int off, int len) throws IOException {
+                SimpleBodyCanonicalizer.this.out.write(b, off, len);
+            }
+        };
     }
 
     public void write(byte[] b, int off, int len) throws IOException {
-        if (len <= 0)
-            return;
-        if (DEEP_DEBUG)
-            System.out.println("I:(" + lastWasCR + "|" + countCRLF + ") ["
-                    + new String(b, off, len) + "]");
-        if (lastWasCR) {
-            if (b[off] == '\n') {
-                countCRLF++;
-                lastWasCR = false;
-                off++;
-                len--;
-            } else {
-                // TODO output the lone \r ? (this condition should never happen
-                // as we expect only CRLF in a compliant 7bit email.
-                out.write('\r');
-                lastWasCR = false;
-            }
-        }
-        int newCountCRLF = 0;
-        boolean newLastWasCR = false;
-        if (len >= 1 && b[off + len - 1] == '\r') {
-            newLastWasCR = true;
-            len--;
-        }
-        while (len >= 2 && b[off + len - 1] == '\n' && b[off + len - 2] == '\r') {
-            len -= 2;
-            newCountCRLF++;
-        }
-        if (len > 0) {
-            dumpCRLF();
-            out.write(b, off, len);
-        }
-        countCRLF += newCountCRLF;
-        lastWasCR = newLastWasCR;
+        canonicalizer.write(b, off, len);
     }
 
     public void write(int b) throws IOException {
-        if (DEEP_DEBUG)
-            System.out.println("B:(" + lastWasCR + "|" + countCRLF + ") [" + (char) b + "]");
-        if (lastWasCR && '\n' == b) {
-            lastWasCR = false;
-            countCRLF++;
-        } else {
-            if (!lastWasCR && '\r' == b) {
-                lastWasCR = true;
-            } else {
-                dumpCRLF();
-                if ('\r' == b)
-                    lastWasCR = true;
-                else
-                    out.write(b);
-            }
-        }
-    }
-
-    public void close() throws IOException {
-        complete();
-        super.close();
+        canonicalizer.write(b);
     }
 
-    private void complete() throws IOException {
-        if (DEEP_DEBUG)
-            System.out.println("C:(" + lastWasCR + "|" + countCRLF + ")");
-        if (lastWasCR) {
-            // if the last char was a CR we'll let dumpCRLF
-            // to output the missing \n
-            lastWasCR = false;
-        }
-        countCRLF = 1;
-        dumpCRLF();
+    public void flush() throws IOException {
+        canonicalizer.flush();
+        super.flush();
     }
 
-    private void dumpCRLF() throws IOException {
-        if (DEEP_DEBUG)
-            System.out.println("D:(" + lastWasCR + "|" + countCRLF + ")");
-        if (lastWasCR) {
-            out.write('\r');
-            lastWasCR = false;
-        }
-        while (countCRLF > 0) {
-            out.write("\r\n".getBytes());
-            countCRLF--;
-        }
+    public void close() throws IOException {
+        canonicalizer.close();
+        super.close();
     }
 
-}
\ No newline at end of file
+}
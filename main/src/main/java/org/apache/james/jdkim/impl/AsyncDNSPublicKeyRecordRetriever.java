@@ -0,0 +1,251 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jdkim.impl;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.james.jdkim.api.AsyncPublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.PublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.TimedRecords;
+import org.apache.james.jdkim.exceptions.PermFailException;
+import org.apache.james.jdkim.exceptions.TempFailException;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Lookup;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Resolver;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.TXTRecord;
+import org.xbill.DNS.TextParseException;
+import org.xbill.DNS.Type;
+
+/**
+ * Non blocking DNS retriever using {@link Resolver#sendAsync(Message)}: no
+ * thread is parked while waiting for an answer.
+ * <p>
+ * Identical queries issued while one is already running share its answer.
+ * NXDOMAIN and empty answers result in an empty list, while timeouts,
+ * network errors and other DNS errors (e.g. SERVFAIL) result in a
+ * TempFailException.
+ */
+public class AsyncDNSPublicKeyRecordRetriever implements AsyncPublicKeyRecordRetriever, PublicKeyRecordRetriever {
+
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+    // The resolver used for the lookup
+    protected final Resolver resolver;
+    private final Duration timeout;
+    private final ConcurrentMap<Name, CompletableFuture<TimedRecords>> inFlight = new ConcurrentHashMap<>();
+
+    public AsyncDNSPublicKeyRecordRetriever() {
+        this(Lookup.getDefaultResolver());
+    }
+
+    public AsyncDNSPublicKeyRecordRetriever(Resolver resolver) {
+        this(resolver, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param resolver the resolver used for the lookup
+     * @param timeout  the maximum time to wait for an answer, including the
+     *                 retries done by the resolver
+     */
+    public AsyncDNSPublicKeyRecordRetriever(Resolver resolver, Duration timeout) {
+        if (timeout == null || timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        this.resolver = resolver;
+        this.timeout = timeout;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CompletableFuture<List<String>> getRecordsAsync(CharSequence methodAndOptions,
+            CharSequence selector, CharSequence token) {
+        return getTimedRecordsAsync(methodAndOptions, selector, token).thenApply(TimedRecords::getRecords);
+    }
+
+    /**
+     * The ttl is the lowest one among the returned TXT records, null when
+     * nothing is found.
+     *
+     * {@inheritDoc}
+     */
+    public CompletableFuture<TimedRecords> getTimedRecordsAsync(CharSequence methodAndOptions,
+            CharSequence selector, CharSequence token) {
+        if (!"dns/txt".equals(methodAndOptions)) {
+            return failed(new PermFailException("Only dns/txt is supported: "
+                    + methodAndOptions + " options unsupported."));
+        }
+        Name name;
+        try {
+            // DNS names are case insensitive: lower case them so that
+            // queries differing only by case are coalesced too.
+            name = Name.fromString((selector + "._domainkey." + token).toLowerCase(Locale.US), Name.root);
+        } catch (TextParseException e) {
+            return failed(new PermFailException("Invalid dns record", e));
+        }
+
+        CompletableFuture<TimedRecords> query = new CompletableFuture<>();
+        CompletableFuture<TimedRecords> running = inFlight.putIfAbsent(name, query);
+        if (running == null) {
+            running = query;
+            query.whenComplete((records, error) -> inFlight.remove(name, query));
+            send(name).whenComplete((records, error) -> {
+                if (error != null) {
+                    query.completeExceptionally(error);
+                } else {
+                    query.complete(records);
+                }
+            });
+        }
+
+        // callers get their own future and their own exception: they may
+        // cancel it or attach their signature record to the failure.
+        return running.handle((records, error) -> {
+            if (error != null) {
+                throw new CompletionException(copy(unwrap(error)));
+            }
+            return records;
+        });
+    }
+
+    /**
+     * Blocking version, waiting for {@link #getRecordsAsync(CharSequence, CharSequence, CharSequence)}.
+     *
+     * {@inheritDoc}
+     */
+    public List<String> getRecords(CharSequence methodAndOptions,
+            CharSequence selector, CharSequence token)
+            throws TempFailException, PermFailException {
+        return getTimedRecords(methodAndOptions, selector, token).getRecords();
+    }
+
+    /**
+     * Blocking version, waiting for {@link #getTimedRecordsAsync(CharSequence, CharSequence, CharSequence)}.
+     *
+     * {@inheritDoc}
+     */
+    public TimedRecords getTimedRecords(CharSequence methodAndOptions,
+            CharSequence selector, CharSequence token)
+            throws TempFailException, PermFailException {
+        try {
+            return getTimedRecordsAsync(methodAndOptions, selector, token).join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof TempFailException) {
+                throw (TempFailException) cause;
+            } else if (cause instanceof PermFailException) {
+                throw (PermFailException) cause;
+            }
+            throw e;
+        }
+    }
+
+    private CompletableFuture<TimedRecords> send(Name name) {
+        Message query = Message.newQuery(Record.newRecord(name, Type.TXT, DClass.IN));
+        CompletableFuture<Message> response;
+        try {
+            response = resolver.sendAsync(query).toCompletableFuture();
+        } catch (RuntimeException e) {
+            response = failed(e);
+        }
+        return response
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((message, error) -> {
+                    if (error != null) {
+                        throw new CompletionException(toTempFail(unwrap(error)));
+                    }
+                    return toRecords(message);
+                });
+    }
+
+    private TimedRecords toRecords(Message response) {
+        int rcode = response.getRcode();
+        if (rcode == Rcode.NXDOMAIN) {
+            return new TimedRecords(Collections.emptyList(), null);
+        }
+        if (rcode != Rcode.NOERROR) {
+            throw new CompletionException(new TempFailException(
+                    "DNS query failed: " + Rcode.string(rcode)));
+        }
+        List<String> records = new ArrayList<>();
+        Duration ttl = null;
+        for (Record r : response.getSection(Section.ANSWER)) {
+            // CNAME records may precede the TXT records of their target
+            if (r.getType() == Type.TXT) {
+                records.add(String.join("", ((TXTRecord) r).getStrings()));
+                Duration recordTtl = Duration.ofSeconds(r.getTTL());
+                if (ttl == null || recordTtl.compareTo(ttl) < 0) {
+                    ttl = recordTtl;
+                }
+            }
+        }
+        return new TimedRecords(records, ttl);
+    }
+
+    private static TempFailException toTempFail(Throwable error) {
+        if (error instanceof TempFailException) {
+            return (TempFailException) error;
+        } else if (error instanceof TimeoutException) {
+            return new TempFailException("Timed out waiting for DNS answer");
+        } else if (error instanceof IOException) {
+            return new TempFailException("DNS query failed: " + error.getMessage());
+        }
+        return new TempFailException("Unexpected DNS failure: " + error);
+    }
+
+    private static Throwable copy(Throwable error) {
+        if (error instanceof TempFailException) {
+            return new TempFailException(error.getMessage());
+        } else if (error instanceof PermFailException) {
+            return new PermFailException(error.getMessage(), (Exception) error);
+        }
+        return error;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+}
@@ -0,0 +1,78 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.impl;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Digest of a canonicalized body, honouring the l= limit. It can be shared
+ * by the body hash jobs of signatures using the same canonicalization,
+ * algorithm and limit: the digest is computed once and kept.
+ */
+class BodyDigest {
+
+    private final CryptoEngines engines;
+    private final String algorithm;
+    private MessageDigest md;
+    // canonicalized bytes still allowed by the limit.
+    private long remaining;
+    private byte[] digest;
+
+    BodyDigest(CryptoEngines engines, String algorithm, int limit) throws NoSuchAlgorithmException {
+        this.engines = engines;
+        this.algorithm = algorithm;
+        this.md = engines.getMessageDigest(algorithm);
+        this.remaining = limit == -1 ? Long.MAX_VALUE : limit;
+    }
+
+    void update(byte[] b, int off, int len) {
+        if (md == null) {
+            throw new IllegalStateException("Digest already computed");
+        }
+        if (len > remaining) {
+            len = (int) remaining;
+        }
+        if (len > 0) {
+            md.update(b, off, len);
+            remaining -= len;
+        }
+    }
+
+    byte[] getDigest() {
+        if (digest == null) {
+            digest = md.digest();
+            // the digest is kept, the engine can serve other bodies.
+            engines.releaseMessageDigest(algorithm, md);
+            md = null;
+        }
+        return digest.clone();
+    }
+
+    /**
+     * Gives the engine back when this digest is not going to be used.
+     */
+    void discard() {
+        if (md != null) {
+            engines.releaseMessageDigest(algorithm, md);
+            md = null;
+        }
+    }
+}
@@ -20,36 +20,41 @@
 package org.apache.james.jdkim.impl;
 
 import java.io.OutputStream;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 import org.apache.james.jdkim.api.BodyHasher;
 import org.apache.james.jdkim.api.SignatureRecord;
-import org.apache.james.jdkim.canon.DebugOutputStream;
-import org.apache.james.jdkim.canon.DigestOutputStream;
-import org.apache.james.jdkim.canon.LimitedOutputStream;
-import org.apache.james.jdkim.canon.RelaxedBodyCanonicalizer;
-import org.apache.james.jdkim.canon.SimpleBodyCanonicalizer;
+import org.apache.james.jdkim.canon.BodyCanonicalizer;
 import org.apache.james.jdkim.exceptions.PermFailException;
 
 public class BodyHasherImpl implements BodyHasher {
 
     private static final boolean DEEP_DEBUG = false;
-    private SignatureRecord sign;
-    private DigestOutputStream digesterOS;
+    private final SignatureRecord sign;
+    private final boolean relaxedBody;
+    private final int limit;
+    private BodyDigest bodyDigest;
     private OutputStream out;
 
     public BodyHasherImpl(SignatureRecord sign) throws PermFailException {
-        MessageDigest md;
+        this(sign, CryptoEngines.getDefault());
+    }
+
+    /**
+     * @param sign    the signature record
+     * @param engines supplies the MessageDigest
+     * @throws PermFailException on unsupported algorithm or canonicalization
+     */
+    public BodyHasherImpl(SignatureRecord sign, CryptoEngines engines) throws PermFailException {
+        int limit = sign.getBodyHashLimit();
+        BodyDigest bodyDigest;
         try {
-            md = MessageDigest.getInstance(sign.getHashAlgo().toString());
+            bodyDigest = new BodyDigest(engines, sign.getHashAlgo().toString(), limit);
         } catch (NoSuchAlgorithmException e) {
             throw new PermFailException("Unsupported algorythm: "
                     + sign.getHashAlgo(), sign, e);
         }
 
-        int limit = sign.getBodyHashLimit();
-
         // TODO enhance this to use a lookup service.
         boolean relaxedBody = SignatureRecord.RELAXED.equals(sign
                 .getBodyCanonicalisationMethod());
@@ -62,34 +67,55 @@ public class BodyHasherImpl implements BodyHasher {
                             + sign.getBodyCanonicalisationMethod(), sign);
         }
 
-        DigestOutputStream dout = new DigestOutputStream(md);
+        this.sign = sign;
+        this.relaxedBody = relaxedBody;
+        this.limit = limit;
+        this.bodyDigest = bodyDigest;
+    }
 
-        OutputStream out = dout;
-        if (DEEP_DEBUG)
-            out = new DebugOutputStream(out);
-        out = prepareCanonicalizerOutputStream(limit, relaxedBody, out);
+    /**
+     * @return the key identifying the jobs producing the same digest: same
+     * canonicalization, algorithm and limit.
+     */
+    String getDigestKey() {
+        return relaxedBody + "/" + sign.getHashAlgo() + "/" + limit;
+    }
 
-        this.sign = sign;
-        this.digesterOS = dout;
-        this.out = out;
+    boolean isRelaxedBody() {
+        return relaxedBody;
     }
 
-    private OutputStream prepareCanonicalizerOutputStream(int limit,
-            boolean relaxedBody, OutputStream dout) {
-        OutputStream out = dout;
-        if (limit != -1)
-            out = new LimitedOutputStream(out, limit);
-        if (relaxedBody)
-            out = new RelaxedBodyCanonicalizer(out);
-        else
-            out = new SimpleBodyCanonicalizer(out);
-        return out;
+    int getLimit() {
+        return limit;
+    }
+
+    BodyDigest getBodyDigest() {
+        return bodyDigest;
+    }
+
+    /**
+     * Makes this job use the digest of another job with the same digest key.
+     */
+    void shareBodyDigest(BodyDigest bodyDigest) {
+        this.bodyDigest.discard();
+        this.bodyDigest = bodyDigest;
     }
 
     /**
      * @see org.apache.james.jdkim.api.BodyHasher#getOutputStream()
      */
     public OutputStream getOutputStream() {
+        if (out == null) {
+            // canonicalization, l= and digest are applied in a single pass.
+            final BodyDigest digest = bodyDigest;
+            out = new BodyCanonicalizer(relaxedBody, limit) {
+                protected void output(byte[] b, int off, int len) {
+                    if (DEEP_DEBUG)
+                        System.out.println("DW:[" + new String(b, off, len) + "]");
+                    digest.update(b, off, len);
+                }
+            };
+        }
         return out;
     }
 
@@ -98,7 +124,7 @@ public class BodyHasherImpl implements BodyHasher {
     }
 
     public byte[] getDigest() {
-        return digesterOS.getDigest();
+        return bodyDigest.getDigest();
     }
 
 }
@@ -0,0 +1,273 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jdkim.impl;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.james.jdkim.api.AsyncPublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.PublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.TimedRecords;
+import org.apache.james.jdkim.exceptions.PermFailException;
+import org.apache.james.jdkim.exceptions.TempFailException;
+
+/**
+ * Caches the answers of another PublicKeyRecordRetriever.
+ * <p>
+ * Records are kept for the ttl reported by the underlying retriever, capped
+ * to maxTtl (maxTtl is used when the ttl is unknown). Empty answers (e.g.
+ * NXDOMAIN) are kept for negativeTtl and temporary failures for tempFailTtl.
+ * Once maxEntries is reached the least recently used entry is evicted.
+ * PermFailException are never cached.
+ * <p>
+ * When an AsyncPublicKeyRecordRetriever is given asynchronous lookups are
+ * run by it, and share the cache with the blocking ones.
+ */
+public class CachingPublicKeyRecordRetriever implements PublicKeyRecordRetriever,
+        AsyncPublicKeyRecordRetriever {
+
+    private static class CachedRecord {
+        private final List<String> records;
+        private final String tempFailure;
+        private final Instant expiration;
+
+        private CachedRecord(List<String> records, String tempFailure, Instant expiration) {
+            this.records = records;
+            this.tempFailure = tempFailure;
+            this.expiration = expiration;
+        }
+    }
+
+    private final PublicKeyRecordRetriever retriever;
+    private final AsyncPublicKeyRecordRetriever asyncRetriever;
+    private final Duration maxTtl;
+    private final Duration negativeTtl;
+    private final Duration tempFailTtl;
+    private final Clock clock;
+    private final Map<String, CachedRecord> cache;
+
+    public CachingPublicKeyRecordRetriever(PublicKeyRecordRetriever retriever,
+            int maxEntries, Duration maxTtl, Duration negativeTtl,
+            Duration tempFailTtl) {
+        this(retriever, maxEntries, maxTtl, negativeTtl, tempFailTtl, Clock.systemUTC());
+    }
+
+    public CachingPublicKeyRecordRetriever(PublicKeyRecordRetriever retriever,
+            int maxEntries, Duration maxTtl, Duration negativeTtl,
+            Duration tempFailTtl, Clock clock) {
+        this(retriever, null, maxEntries, maxTtl, negativeTtl, tempFailTtl, clock);
+    }
+
+    /**
+     * @param retriever      runs the blocking lookups
+     * @param asyncRetriever runs the asynchronous lookups, when null they
+     *                       are run by retriever in the calling thread
+     */
+    public CachingPublicKeyRecordRetriever(PublicKeyRecordRetriever retriever,
+            AsyncPublicKeyRecordRetriever asyncRetriever, int maxEntries, Duration maxTtl,
+            Duration negativeTtl, Duration tempFailTtl) {
+        this(retriever, asyncRetriever, maxEntries, maxTtl, negativeTtl, tempFailTtl, Clock.systemUTC());
+    }
+
+    public CachingPublicKeyRecordRetriever(PublicKeyRecordRetriever retriever,
+            AsyncPublicKeyRecordRetriever asyncRetriever, int maxEntries, Duration maxTtl,
+            Duration negativeTtl, Duration tempFailTtl, Clock clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.retriever = retriever;
+        this.asyncRetriever = asyncRetriever;
+        this.maxTtl = maxTtl;
+        this.negativeTtl = negativeTtl;
+        this.tempFailTtl = tempFailTtl;
+        this.clock = clock;
+        this.cache = new LinkedHashMap<String, CachedRecord>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry<String, CachedRecord> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> getRecords(CharSequence methodAndOption,
+            CharSequence selector, CharSequence token)
+            throws TempFailException, PermFailException {
+        return getTimedRecords(methodAndOption, selector, token).getRecords();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public TimedRecords getTimedRecords(CharSequence methodAndOption,
+            CharSequence selector, CharSequence token)
+            throws TempFailException, PermFailException {
+        String key = key(methodAndOption, selector, token);
+        Instant now = clock.instant();
+        TimedRecords cached = cached(key, now);
+        if (cached != null) {
+            return cached;
+        }
+
+        TimedRecords result;
+        try {
+            result = retriever.getTimedRecords(methodAndOption, selector, token);
+        } catch (TempFailException e) {
+            store(key, new CachedRecord(null, e.getMessage(), now.plus(tempFailTtl)));
+            throw e;
+        }
+        return store(key, now, result);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CompletableFuture<List<String>> getRecordsAsync(CharSequence methodAndOption,
+            CharSequence selector, CharSequence token) {
+        return getTimedRecordsAsync(methodAndOption, selector, token).thenApply(TimedRecords::getRecords);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CompletableFuture<TimedRecords> getTimedRecordsAsync(CharSequence methodAndOption,
+            CharSequence selector, CharSequence token) {
+        if (asyncRetriever == null) {
+            CompletableFuture<TimedRecords> result = new CompletableFuture<>();
+            try {
+                result.complete(getTimedRecords(methodAndOption, selector, token));
+            } catch (TempFailException | PermFailException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+        String key = key(methodAndOption, selector, token);
+        Instant now = clock.instant();
+        CompletableFuture<TimedRecords> lookup;
+        try {
+            TimedRecords cached = cached(key, now);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            lookup = asyncRetriever.getTimedRecordsAsync(methodAndOption, selector, token);
+        } catch (TempFailException | RuntimeException e) {
+            lookup = new CompletableFuture<>();
+            lookup.completeExceptionally(e);
+            return lookup;
+        }
+        return lookup.handle((result, error) -> {
+            if (error != null) {
+                Throwable cause = error;
+                while (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                if (cause instanceof TempFailException) {
+                    store(key, new CachedRecord(null, cause.getMessage(), now.plus(tempFailTtl)));
+                }
+                throw error instanceof CompletionException
+                        ? (CompletionException) error : new CompletionException(error);
+            }
+            return store(key, now, result);
+        });
+    }
+
+    private static String key(CharSequence methodAndOption, CharSequence selector,
+            CharSequence token) {
+        // DNS names are case insensitive
+        return methodAndOption + "|"
+                + (selector + "._domainkey." + token).toLowerCase(Locale.US);
+    }
+
+    /**
+     * @return the cached records, null when missing or expired
+     * @throws TempFailException when a temporary failure is cached
+     */
+    private TimedRecords cached(String key, Instant now) throws TempFailException {
+        CachedRecord entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+        if (entry == null || !entry.expiration.isAfter(now)) {
+            return null;
+        }
+        if (entry.tempFailure != null) {
+            // a new exception each time: callers attach their record to it
+            throw new TempFailException(entry.tempFailure);
+        }
+        return new TimedRecords(entry.records, Duration.between(now, entry.expiration));
+    }
+
+    private TimedRecords store(String key, Instant now, TimedRecords result) {
+        List<String> records = result.getRecords();
+        Duration ttl;
+        if (records == null || records.isEmpty()) {
+            ttl = negativeTtl;
+        } else {
+            records = Collections.unmodifiableList(records);
+            ttl = result.getTtl();
+            if (ttl == null || ttl.compareTo(maxTtl) > 0) {
+                ttl = maxTtl;
+            }
+        }
+        store(key, new CachedRecord(records, null, now.plus(ttl)));
+        return new TimedRecords(records, ttl);
+    }
+
+    private void store(String key, CachedRecord entry) {
+        synchronized (cache) {
+            if (entry.expiration.isAfter(clock.instant())) {
+                cache.put(key, entry);
+            } else {
+                cache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Drops every cached answer.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return the number of cached answers, including expired ones not yet
+     *         evicted.
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.jdkim.impl;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.james.jdkim.api.SigningKey;
+import org.apache.james.jdkim.api.SigningKeyRegistry;
+
+/**
+ * Caches the keys of another SigningKeyRegistry, so that keys are loaded
+ * and decoded once. Domains without key are cached too.
+ * <p>
+ * Entries are reloaded once older than maxAge, which picks up rotated keys,
+ * and can be dropped at once with {@link #invalidate(String)}. Loading
+ * happens outside of the cache lock, concurrent loads of a domain sharing
+ * a single call to the registry, and a rotation only replaces the entry:
+ * signing in progress keeps using the key it got. When reloading fails the
+ * previous key is still returned, for at most maxStaleAge past its
+ * expiration. Once maxEntries is reached the least recently used entry is
+ * evicted.
+ */
+public class CachingSigningKeyRegistry implements SigningKeyRegistry {
+
+    private static class CachedKey {
+        private final SigningKey key;
+        private final Instant expiration;
+        private final Instant staleExpiration;
+
+        private CachedKey(SigningKey key, Instant expiration, Instant staleExpiration) {
+            this.key = key;
+            this.expiration = expiration;
+            this.staleExpiration = staleExpiration;
+        }
+    }
+
+    private final SigningKeyRegistry registry;
+    private final Duration maxAge;
+    private final Duration maxStaleAge;
+    private final Clock clock;
+    private final Map<String, CachedKey> cache;
+    private final ConcurrentMap<String, CompletableFuture<SigningKey>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * A key whose reloading fails is returned for at most maxAge past its
+     * expiration.
+     */
+    public CachingSigningKeyRegistry(SigningKeyRegistry registry, int maxEntries, Duration maxAge) {
+        this(registry, maxEntries, maxAge, maxAge, Clock.systemUTC());
+    }
+
+    public CachingSigningKeyRegistry(SigningKeyRegistry registry, int maxEntries, Duration maxAge,
+            Duration maxStaleAge) {
+        this(registry, maxEntries, maxAge, maxStaleAge, Clock.systemUTC());
+    }
+
+    public CachingSigningKeyRegistry(SigningKeyRegistry registry, int maxEntries, Duration maxAge,
+            Clock clock) {
+        this(registry, maxEntries, maxAge, maxAge, clock);
+    }
+
+    /**
+     * @param registry    the registry loading the keys
+     * @param maxEntries  the maximum number of cached domains
+     * @param maxAge      how long a key is used before being reloaded
+     * @param maxStaleAge how long past maxAge a key is still used while
+     *                    reloading it fails
+     * @param clock       the clock
+     */
+    public CachingSigningKeyRegistry(SigningKeyRegistry registry, int maxEntries, Duration maxAge,
+            Duration maxStaleAge, Clock clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        if (maxAge == null || maxAge.isNegative()) {
+            throw new IllegalArgumentException("maxAge must not be null or negative");
+        }
+        if (maxStaleAge == null || maxStaleAge.isNegative()) {
+            throw new IllegalArgumentException("maxStaleAge must not be null or negative");
+        }
+        this.registry = registry;
+        this.maxAge = maxAge;
+        this.maxStaleAge = maxStaleAge;
+        this.clock = clock;
+        this.cache = new LinkedHashMap<String, CachedKey>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry<String, CachedKey> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public SigningKey getSigningKey(String domain) throws IOException {
+        String name = domain.toLowerCase(Locale.US);
+        CachedKey entry;
+        synchronized (cache) {
+            entry = cache.get(name);
+        }
+        Instant now = clock.instant();
+        if (entry != null && now.isBefore(entry.expiration)) {
+            return entry.key;
+        }
+        try {
+            return load(domain, name, now);
+        } catch (IOException e) {
+            if (entry != null && entry.key != null && now.isBefore(entry.staleExpiration)) {
+                return entry.key;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the key of a domain, or waits for the load already running.
+     */
+    private SigningKey load(String domain, String name, Instant now) throws IOException {
+        CompletableFuture<SigningKey> load = new CompletableFuture<>();
+        CompletableFuture<SigningKey> running = loading.putIfAbsent(name, load);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            SigningKey key = registry.getSigningKey(domain);
+            Instant expiration = now.plus(maxAge);
+            synchronized (cache) {
+                cache.put(name, new CachedKey(key, expiration, expiration.plus(maxStaleAge)));
+            }
+            load.complete(key);
+            return key;
+        } catch (IOException | RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(name, load);
+        }
+    }
+
+    private static SigningKey await(CompletableFuture<SigningKey> running) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return running.get();
+                } catch (InterruptedException e) {
+                    // keep waiting: loading a key is short, we only restore
+                    // the flag afterwards.
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw new IOException(cause.getMessage(), cause);
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Drops the key of a domain, e.g. after a rotation. The next call
+     * loads it again.
+     *
+     * @param domain the signing domain
+     */
+    public void invalidate(String domain) {
+        synchronized (cache) {
+            cache.remove(domain.toLowerCase(Locale.US));
+        }
+    }
+
+    /**
+     * Drops every cached key.
+     */
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return the number of cached domains.
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
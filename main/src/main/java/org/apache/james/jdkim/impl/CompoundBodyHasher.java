@@ -1,73 +1,144 @@
-/****************************************************************
- * Licensed to the Apache Software Foundation (ASF) under one   *
- * or more contributor license agreements.  See the NOTICE file *
- * distributed with this work for additional information        *
- * regarding copyright ownership.  The ASF licenses this file   *
- * to you under the Apache License, Version 2.0 (the            *
- * "License"); you may not use this file except in compliance   *
- * with the License.  You may obtain a copy of the License at   *
- *                                                              *
- *   http://www.apache.org/licenses/LICENSE-2.0                 *
- *                                                              *
- * Unless required by applicable law or agreed to in writing,   *
- * software distributed under the License is distributed on an  *
- * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
- * KIND, either express or implied.  See the License for the    *
- * specific language governing permissions and limitations      *
- * under the License.                                           *
- ****************************************************************/
-
-package org.apache.james.jdkim.impl;
-
-import java.io.OutputStream;
-import java.util.Hashtable;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-
-import org.apache.james.jdkim.api.BodyHasher;
-import org.apache.james.jdkim.canon.CompoundOutputStream;
-import org.apache.james.jdkim.exceptions.FailException;
-
-/**
- * CompoundBodyHasher is used for verification purpose.
- * It contains a compund output stream that will calculate
- * the body hash for multiple signatures.
- * This object is a container for "bodyHashJobs" and
- * "signatureExceptions" for 2-stage verification process.
- */
-public class CompoundBodyHasher implements BodyHasher {
-
-    private final OutputStream o;
-    private final Map<String, BodyHasherImpl> bodyHashJobs;
-    private final Map<String, FailException> signatureExceptions;
-    
-    public CompoundBodyHasher(Map<String, BodyHasherImpl> bodyHashJobs,
-            Hashtable<String, FailException> signatureExceptions) {
-        this.bodyHashJobs = bodyHashJobs;
-        this.signatureExceptions = signatureExceptions;
-        if (bodyHashJobs.size() == 1) {
-            o = bodyHashJobs.values().iterator().next()
-                    .getOutputStream();
-        } else {
-            List<OutputStream> outputStreams = new LinkedList<>();
-            for (BodyHasherImpl bhj : bodyHashJobs.values()) {
-                outputStreams.add(bhj.getOutputStream());
-            }
-            o = new CompoundOutputStream(outputStreams);
-        }
-    }
-
-    public OutputStream getOutputStream() {
-        return o;
-    }
-    
-    public Map<String, BodyHasherImpl> getBodyHashJobs() {
-        return bodyHashJobs;
-    }
-
-    public Map<String, FailException> getSignatureExceptions() {
-        return signatureExceptions;
-    }
-
-}
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.impl;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.apache.james.jdkim.api.BodyHasher;
+import org.apache.james.jdkim.canon.BodyCanonicalizer;
+import org.apache.james.jdkim.canon.CompoundOutputStream;
+import org.apache.james.jdkim.canon.ParallelOutputStream;
+import org.apache.james.jdkim.exceptions.FailException;
+
+/**
+ * CompoundBodyHasher is used for verification purpose.
+ * It contains a compund output stream that will calculate
+ * the body hash for multiple signatures.
+ * This object is a container for "bodyHashJobs" and
+ * "signatureExceptions" for 2-stage verification process.
+ * <p>
+ * The body is canonicalized once per canonicalization method, and jobs
+ * sharing the same canonicalization, algorithm and limit share a single
+ * digest.
+ * <p>
+ * When an executor is given and more than one digest has to be computed,
+ * each digest is computed by its own task instead, see
+ * {@link ParallelOutputStream}.
+ */
+public class CompoundBodyHasher implements BodyHasher {
+
+    private final OutputStream o;
+    private final Map<String, BodyHasherImpl> bodyHashJobs;
+    private final Map<String, FailException> signatureExceptions;
+    
+    public CompoundBodyHasher(Map<String, BodyHasherImpl> bodyHashJobs,
+            Hashtable<String, FailException> signatureExceptions) {
+        this(bodyHashJobs, signatureExceptions, null);
+    }
+
+    /**
+     * @param bodyHashJobs        the jobs, by DKIM-Signature field
+     * @param signatureExceptions the failures, by DKIM-Signature field
+     * @param executor            runs the digests in parallel, null to
+     *                            compute them in the writing thread
+     */
+    public CompoundBodyHasher(Map<String, BodyHasherImpl> bodyHashJobs,
+            Hashtable<String, FailException> signatureExceptions, Executor executor) {
+        this.bodyHashJobs = bodyHashJobs;
+        this.signatureExceptions = signatureExceptions;
+        if (bodyHashJobs.size() == 1) {
+            o = bodyHashJobs.values().iterator().next()
+                    .getOutputStream();
+        } else {
+            // jobs grouped by canonicalization, then by digest key.
+            Map<Boolean, Map<String, BodyHasherImpl>> groups = new LinkedHashMap<>();
+            for (BodyHasherImpl bhj : bodyHashJobs.values()) {
+                Map<String, BodyHasherImpl> digests = groups.computeIfAbsent(
+                        bhj.isRelaxedBody(), k -> new LinkedHashMap<>());
+                BodyHasherImpl first = digests.putIfAbsent(bhj.getDigestKey(), bhj);
+                if (first != null) {
+                    bhj.shareBodyDigest(first.getBodyDigest());
+                }
+            }
+            List<OutputStream> outputStreams = new LinkedList<>();
+            if (executor != null) {
+                // one canonicalizer per digest, each one on its own task.
+                for (Map<String, BodyHasherImpl> digests : groups.values()) {
+                    for (BodyHasherImpl bhj : digests.values()) {
+                        outputStreams.add(bhj.getOutputStream());
+                    }
+                }
+                if (outputStreams.size() > 1) {
+                    o = new ParallelOutputStream(outputStreams, executor);
+                    return;
+                }
+                outputStreams.clear();
+            }
+            for (Map.Entry<Boolean, Map<String, BodyHasherImpl>> group : groups.entrySet()) {
+                outputStreams.add(newGroupCanonicalizer(group.getKey(), group.getValue().values()));
+            }
+            o = outputStreams.size() == 1 ? outputStreams.get(0)
+                    : new CompoundOutputStream(outputStreams);
+        }
+    }
+
+    private static OutputStream newGroupCanonicalizer(boolean relaxedBody,
+            Iterable<BodyHasherImpl> jobs) {
+        final List<BodyDigest> digests = new ArrayList<>();
+        // nothing is canonicalized beyond the highest limit.
+        int limit = 0;
+        for (BodyHasherImpl bhj : jobs) {
+            digests.add(bhj.getBodyDigest());
+            if (limit != -1) {
+                limit = bhj.getLimit() == -1 ? -1 : Math.max(limit, bhj.getLimit());
+            }
+        }
+        if (digests.size() == 1) {
+            return jobs.iterator().next().getOutputStream();
+        }
+        return new BodyCanonicalizer(relaxedBody, limit) {
+            protected void output(byte[] b, int off, int len) {
+                for (BodyDigest digest : digests) {
+                    digest.update(b, off, len);
+                }
+            }
+        };
+    }
+
+    public OutputStream getOutputStream() {
+        return o;
+    }
+    
+    public Map<String, BodyHasherImpl> getBodyHashJobs() {
+        return bodyHashJobs;
+    }
+
+    public Map<String, FailException> getSignatureExceptions() {
+        return signatureExceptions;
+    }
+
+}
@@ -0,0 +1,137 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.impl;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Signature;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Supplies the MessageDigest and Signature engines used to hash bodies and
+ * to sign or verify headers.
+ * <p>
+ * Engines are looked up once and then reused: released engines are reset
+ * and kept by the releasing thread, so the next request for the same
+ * algorithm on that thread skips the provider lookup and the construction.
+ * A provider can be chosen for each algorithm, the default providers are
+ * used otherwise.
+ * <p>
+ * Engines are not thread safe, an engine must only be used by the borrowing
+ * code until it is released. Releasing is optional: an engine which is not
+ * released is simply not reused.
+ */
+public class CryptoEngines {
+
+    private static final CryptoEngines DEFAULT = new CryptoEngines(Collections.<String, Provider>emptyMap());
+
+    // engines kept by each thread, for each algorithm.
+    private static final int MAX_IDLE_PER_ALGORITHM = 4;
+
+    private final Map<String, Provider> providers;
+    private final ThreadLocal<Map<String, ArrayDeque<MessageDigest>>> digests =
+            ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<Map<String, ArrayDeque<Signature>>> signatures =
+            ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * @return the engines using the default providers
+     */
+    public static CryptoEngines getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param providers the providers to use by algorithm name (e.g.
+     *                  "SHA-256" or "SHA256withRSA", case insensitive).
+     *                  Algorithms not in the map use the default providers.
+     */
+    public CryptoEngines(Map<String, Provider> providers) {
+        Map<String, Provider> normalized = new HashMap<>();
+        for (Map.Entry<String, Provider> e : providers.entrySet()) {
+            normalized.put(e.getKey().toUpperCase(Locale.US), e.getValue());
+        }
+        this.providers = normalized;
+    }
+
+    /**
+     * @param algorithm the digest algorithm, e.g. "SHA-256"
+     * @return a MessageDigest in its initial state
+     * @throws NoSuchAlgorithmException if the algorithm is not supported
+     */
+    public MessageDigest getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+        ArrayDeque<MessageDigest> idle = digests.get().get(algorithm);
+        if (idle != null && !idle.isEmpty()) {
+            return idle.pop();
+        }
+        Provider provider = providers.get(algorithm.toUpperCase(Locale.US));
+        return provider != null ? MessageDigest.getInstance(algorithm, provider)
+                : MessageDigest.getInstance(algorithm);
+    }
+
+    /**
+     * Resets the digest and makes it available to the current thread.
+     *
+     * @param algorithm the algorithm the digest was requested for
+     * @param md        a digest obtained from {@link #getMessageDigest(String)}
+     */
+    public void releaseMessageDigest(String algorithm, MessageDigest md) {
+        md.reset();
+        release(digests.get(), algorithm, md);
+    }
+
+    /**
+     * @param algorithm the signature algorithm, e.g. "SHA256withRSA"
+     * @return a Signature, to be initialized for signing or verification
+     * @throws NoSuchAlgorithmException if the algorithm is not supported
+     */
+    public Signature getSignature(String algorithm) throws NoSuchAlgorithmException {
+        ArrayDeque<Signature> idle = signatures.get().get(algorithm);
+        if (idle != null && !idle.isEmpty()) {
+            return idle.pop();
+        }
+        Provider provider = providers.get(algorithm.toUpperCase(Locale.US));
+        return provider != null ? Signature.getInstance(algorithm, provider)
+                : Signature.getInstance(algorithm);
+    }
+
+    /**
+     * Makes the signature available to the current thread. Its state is
+     * reset by the initSign or initVerify call of the next user.
+     *
+     * @param algorithm the algorithm the signature was requested for
+     * @param signature a signature obtained from {@link #getSignature(String)}
+     */
+    public void releaseSignature(String algorithm, Signature signature) {
+        release(signatures.get(), algorithm, signature);
+    }
+
+    private static <T> void release(Map<String, ArrayDeque<T>> pool, String algorithm, T engine) {
+        ArrayDeque<T> idle = pool.computeIfAbsent(algorithm, k -> new ArrayDeque<>());
+        if (idle.size() < MAX_IDLE_PER_ALGORITHM) {
+            idle.push(engine);
+        }
+    }
+}
@@ -19,12 +19,14 @@
 
 package org.apache.james.jdkim.impl;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import org.apache.james.jdkim.api.PublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.TimedRecords;
 import org.apache.james.jdkim.exceptions.PermFailException;
 import org.apache.james.jdkim.exceptions.TempFailException;
 import org.xbill.DNS.Lookup;
@@ -53,6 +55,18 @@ public class DNSPublicKeyRecordRetriever implements PublicKeyRecordRetriever {
     public List<String> getRecords(CharSequence methodAndOptions,
                                    CharSequence selector, CharSequence token)
             throws TempFailException, PermFailException {
+        return getTimedRecords(methodAndOptions, selector, token).getRecords();
+    }
+
+    /**
+     * The ttl is the lowest one among the returned TXT records, null when
+     * nothing is found.
+     *
+     * {@inheritDoc}
+     */
+    public TimedRecords getTimedRecords(CharSequence methodAndOptions,
+                                        CharSequence selector, CharSequence token)
+            throws TempFailException, PermFailException {
         if (!"dns/txt".equals(methodAndOptions))
             throw new PermFailException("Only dns/txt is supported: "
                     + methodAndOptions + " options unsupported.");
@@ -71,12 +85,18 @@ public class DNSPublicKeyRecordRetriever implements PublicKeyRecordRetriever {
         }
 
         if (rr == null || rr.length == 0) {
-            return Collections.emptyList();
+            return new TimedRecords(Collections.emptyList(), null);
         }
 
-        return Arrays.stream(rr)
+        List<Record> txt = Arrays.stream(rr)
                 .filter(r -> r.getType() == Type.TXT)
-                .map(r -> String.join("", ((TXTRecord) r).getStrings()))
                 .collect(Collectors.toList());
+        Duration ttl = txt.stream()
+                .map(r -> Duration.ofSeconds(r.getTTL()))
+                .min(Duration::compareTo)
+                .orElse(null);
+        return new TimedRecords(txt.stream()
+                .map(r -> String.join("", ((TXTRecord) r).getStrings()))
+                .collect(Collectors.toList()), ttl);
     }
 }
@@ -0,0 +1,192 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.jdkim.impl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.james.jdkim.DKIMSigner;
+import org.apache.james.jdkim.api.SigningKey;
+import org.apache.james.jdkim.api.SigningKeyRegistry;
+
+/**
+ * Reads the signing keys from a directory holding one file per key, named
+ * after the DNS record of the public key:
+ * {@code <selector>._domainkey.<domain>.key}. Files contain the PKCS8
+ * private key, base64 encoded, with or without the PEM armor.
+ * <p>
+ * When a domain has several keys the greatest selector, in lexicographic
+ * order, is used: keys are rotated by adding a file with a greater
+ * (e.g. dated) selector.
+ * <p>
+ * The directory is listed once into an index of the key file of each
+ * domain, listed again when its modification time changes (files added or
+ * removed) or once the index is older than refreshInterval. Key files are
+ * read on every call, wrap this in a {@link CachingSigningKeyRegistry}.
+ */
+public class DirectorySigningKeyRegistry implements SigningKeyRegistry {
+
+    private static final String SUFFIX = ".key";
+    private static final String DOMAINKEY = "._domainkey.";
+    private static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofMinutes(1);
+
+    private static class KeyFile {
+        private final String selector;
+        private final Path file;
+
+        private KeyFile(String selector, Path file) {
+            this.selector = selector;
+            this.file = file;
+        }
+    }
+
+    private static class Index {
+        private final Map<String, KeyFile> keyFiles;
+        private final FileTime modified;
+        private final Instant expiration;
+
+        private Index(Map<String, KeyFile> keyFiles, FileTime modified, Instant expiration) {
+            this.keyFiles = keyFiles;
+            this.modified = modified;
+            this.expiration = expiration;
+        }
+    }
+
+    private final Path directory;
+    private final String template;
+    private final Duration refreshInterval;
+    private final Clock clock;
+    private volatile Index index;
+
+    /**
+     * @param directory the directory of the key files
+     * @param template  the DKIM-Signature template, without the d= and s=
+     *                  tags which are added for each key
+     */
+    public DirectorySigningKeyRegistry(Path directory, String template) {
+        this(directory, template, DEFAULT_REFRESH_INTERVAL, Clock.systemUTC());
+    }
+
+    /**
+     * @param directory       the directory of the key files
+     * @param template        the DKIM-Signature template, without the d=
+     *                        and s= tags which are added for each key
+     * @param refreshInterval the maximum age of the index, for changes the
+     *                        directory modification time misses
+     * @param clock           the clock
+     */
+    public DirectorySigningKeyRegistry(Path directory, String template, Duration refreshInterval,
+            Clock clock) {
+        if (refreshInterval == null || refreshInterval.isNegative()) {
+            throw new IllegalArgumentException("refreshInterval must not be null or negative");
+        }
+        this.directory = directory;
+        this.template = template;
+        this.refreshInterval = refreshInterval;
+        this.clock = clock;
+    }
+
+    public SigningKey getSigningKey(String domain) throws IOException {
+        KeyFile keyFile = index().keyFiles.get(domain.toLowerCase(Locale.US));
+        if (keyFile == null) {
+            return null;
+        }
+        String encoded = new String(Files.readAllBytes(keyFile.file), StandardCharsets.US_ASCII);
+        return new SigningKey(domain, keyFile.selector, withDomainAndSelector(template, domain, keyFile.selector),
+                decodePrivateKey(encoded, keyFile.file.toString()));
+    }
+
+    private Index index() throws IOException {
+        Index current = index;
+        FileTime modified = Files.getLastModifiedTime(directory);
+        if (current != null && current.modified.equals(modified)
+                && clock.instant().isBefore(current.expiration)) {
+            return current;
+        }
+        synchronized (this) {
+            current = index;
+            if (current != null && current.modified.equals(modified)
+                    && clock.instant().isBefore(current.expiration)) {
+                return current;
+            }
+            // read before listing: a change while listing triggers a new one.
+            current = new Index(list(), modified, clock.instant().plus(refreshInterval));
+            index = current;
+            return current;
+        }
+    }
+
+    /**
+     * @return the key file with the greatest selector of each domain
+     */
+    private Map<String, KeyFile> list() throws IOException {
+        Map<String, KeyFile> keyFiles = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String lowerCase = name.toLowerCase(Locale.US);
+                int separator = lowerCase.indexOf(DOMAINKEY);
+                if (separator <= 0 || !lowerCase.endsWith(SUFFIX)
+                        || separator + DOMAINKEY.length() >= lowerCase.length() - SUFFIX.length()) {
+                    continue;
+                }
+                String domain = lowerCase.substring(separator + DOMAINKEY.length(),
+                        lowerCase.length() - SUFFIX.length());
+                String selector = name.substring(0, separator);
+                KeyFile current = keyFiles.get(domain);
+                if (current == null || selector.compareTo(current.selector) > 0) {
+                    keyFiles.put(domain, new KeyFile(selector, file));
+                }
+            }
+        }
+        return keyFiles;
+    }
+
+    static String withDomainAndSelector(String template, String domain, String selector) {
+        String trimmed = template.trim();
+        String separator = trimmed.isEmpty() || trimmed.endsWith(";") ? " " : "; ";
+        return trimmed + separator + "d=" + domain + "; s=" + selector + ";";
+    }
+
+    private static PrivateKey decodePrivateKey(String encoded, String source) throws IOException {
+        StringBuilder base64 = new StringBuilder();
+        for (String line : encoded.split("\r?\n")) {
+            if (!line.startsWith("-----")) {
+                base64.append(line.trim());
+            }
+        }
+        try {
+            return DKIMSigner.getPrivateKey(base64.toString());
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IOException("Invalid private key in " + source, e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.impl;
+
+import org.apache.james.jdkim.api.Headers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable Headers over already serialized fields. Fields are indexed by
+ * their lowercased name once, so {@link #getFields(String)} is a map lookup
+ * returning the same unmodifiable list on every call.
+ */
+public class IndexedHeaders implements Headers {
+
+    private final List<String> fields;
+    private final Map<String, List<String>> index = new HashMap<>();
+
+    /**
+     * @param fields the raw fields, "Name: value" with folding preserved and
+     *               without the terminating CRLF, in message order
+     */
+    public IndexedHeaders(List<String> fields) {
+        this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+        for (String field : this.fields) {
+            int colon = field != null ? field.indexOf(':') : -1;
+            if (colon == -1) {
+                continue;
+            }
+            int nameEnd = colon;
+            while (nameEnd > 0 && (field.charAt(nameEnd - 1) == ' ' || field.charAt(nameEnd - 1) == '\t')) {
+                nameEnd--;
+            }
+            String name = field.substring(0, nameEnd).toLowerCase(Locale.US);
+            index.computeIfAbsent(name, k -> new ArrayList<>(1)).add(field);
+        }
+        index.replaceAll((name, list) -> Collections.unmodifiableList(list));
+    }
+
+    /**
+     * @see org.apache.james.jdkim.api.Headers#getFields()
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * @see org.apache.james.jdkim.api.Headers#getFields(java.lang.String)
+     */
+    public List<String> getFields(final String name) {
+        List<String> res = index.get(name.toLowerCase(Locale.US));
+        return res != null ? res : Collections.emptyList();
+    }
+}
@@ -0,0 +1,92 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.jdkim.impl;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.util.Enumeration;
+import java.util.Locale;
+
+import org.apache.james.jdkim.api.SigningKey;
+import org.apache.james.jdkim.api.SigningKeyRegistry;
+
+/**
+ * Reads the signing keys from a {@link KeyStore}, the alias of each key
+ * being the DNS record of the public key:
+ * {@code <selector>._domainkey.<domain>}.
+ * <p>
+ * As for {@link DirectorySigningKeyRegistry} the greatest selector of a
+ * domain is used. The key store is read on every call, wrap this in a
+ * {@link CachingSigningKeyRegistry}.
+ */
+public class KeyStoreSigningKeyRegistry implements SigningKeyRegistry {
+
+    private final KeyStore keyStore;
+    private final char[] password;
+    private final String template;
+
+    /**
+     * @param keyStore a loaded key store
+     * @param password the password of the keys
+     * @param template the DKIM-Signature template, without the d= and s=
+     *                 tags which are added for each key
+     */
+    public KeyStoreSigningKeyRegistry(KeyStore keyStore, char[] password, String template) {
+        this.keyStore = keyStore;
+        this.password = password.clone();
+        this.template = template;
+    }
+
+    public SigningKey getSigningKey(String domain) throws IOException {
+        // some key stores lower case the aliases.
+        String aliasSuffix = "._domainkey." + domain.toLowerCase(Locale.US);
+        try {
+            String selector = null;
+            String alias = null;
+            Enumeration<String> aliases = keyStore.aliases();
+            while (aliases.hasMoreElements()) {
+                String candidate = aliases.nextElement();
+                if (candidate.length() > aliasSuffix.length()
+                        && candidate.toLowerCase(Locale.US).endsWith(aliasSuffix)
+                        && keyStore.isKeyEntry(candidate)) {
+                    String candidateSelector = candidate.substring(0, candidate.length() - aliasSuffix.length());
+                    if (selector == null || candidateSelector.compareTo(selector) > 0) {
+                        selector = candidateSelector;
+                        alias = candidate;
+                    }
+                }
+            }
+            if (alias == null) {
+                return null;
+            }
+            Key key = keyStore.getKey(alias, password);
+            if (!(key instanceof PrivateKey)) {
+                throw new IOException("Not a private key: " + alias);
+            }
+            return new SigningKey(domain, selector,
+                    DirectorySigningKeyRegistry.withDomainAndSelector(template, domain, selector),
+                    (PrivateKey) key);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cannot read the key of " + domain, e);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.impl;
+
+import org.apache.james.jdkim.api.Headers;
+import org.apache.james.jdkim.canon.ByteBufferSink;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * A message stored in a file, memory mapped rather than read through a
+ * stream. The header/body boundary is located in the mapping and only the
+ * header block is parsed, the same way {@link StreamingMessage} does; the
+ * body is handed to a body hasher from the mapping by
+ * {@link #writeBody(OutputStream)}.
+ * <p>
+ * Line endings are converted to CRLF, as the stream based parsers do: by
+ * the body canonicalizers when the output stream supports it, see
+ * {@link ByteBufferSink#convertLineEndings()}, otherwise while copying.
+ * <p>
+ * {@link #close()} releases the mapping, which would otherwise only be
+ * released when the garbage collector reclaims it. As the number of
+ * mappings of a process is limited (vm.max_map_count on Linux), files
+ * smaller than the mapping threshold, most messages, are read into the
+ * heap instead of being mapped.
+ */
+public class MappedMessage implements Headers, Closeable {
+
+    /**
+     * The size from which files are mapped, smaller ones are read.
+     */
+    public static final int DEFAULT_MAPPING_THRESHOLD = 256 * 1024;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    // sun.misc.Unsafe#invokeCleaner, null when not available.
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // mappings are left to the garbage collector.
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    // the whole file when it is mapped, null otherwise.
+    private ByteBuffer mapping;
+    private ByteBuffer body;
+    private final StreamingMessage headers;
+
+    /**
+     * Maps or reads the file, depending on its size, and parses its header
+     * block.
+     *
+     * @param path the message file
+     * @throws IOException on I/O errors, when the header block exceeds the
+     *                     allowed length or when the file is larger than
+     *                     2 GB
+     */
+    public MappedMessage(Path path) throws IOException {
+        this(path, DEFAULT_MAPPING_THRESHOLD);
+    }
+
+    /**
+     * @param path             the message file
+     * @param mappingThreshold files of at least this size are mapped,
+     *                         smaller ones are read
+     * @throws IOException on I/O errors, when the header block exceeds the
+     *                     allowed length or when the file is larger than
+     *                     2 GB
+     */
+    public MappedMessage(Path path, int mappingThreshold) throws IOException {
+        ByteBuffer message;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Message too large to be mapped: " + path);
+            }
+            if (size >= mappingThreshold) {
+                // the mapping stays valid once the channel is closed.
+                message = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                mapping = message;
+            } else {
+                message = ByteBuffer.allocate((int) size);
+                while (message.hasRemaining() && channel.read(message) != -1) {
+                    // read it all.
+                }
+                message.flip();
+            }
+        }
+        try {
+            int bodyStart = bodyStart(message);
+            byte[] head = new byte[bodyStart];
+            message.get(head);
+            this.headers = new StreamingMessage(new ByteArrayInputStream(head));
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        this.body = message.slice();
+    }
+
+    /**
+     * @return the offset following the first empty line, or the end of the
+     * message when there is none
+     */
+    private static int bodyStart(ByteBuffer message) {
+        int limit = message.limit();
+        int i = 0;
+        while (i < limit) {
+            byte b = message.get(i);
+            if (b == '\r' || b == '\n') {
+                // an empty line: the body follows it.
+                return i + eolLength(message, i);
+            }
+            while (i < limit && (b = message.get(i)) != '\r' && b != '\n') {
+                i++;
+            }
+            if (i < limit) {
+                i += eolLength(message, i);
+            }
+        }
+        return limit;
+    }
+
+    private static int eolLength(ByteBuffer message, int i) {
+        return message.get(i) == '\r' && i + 1 < message.limit()
+                && message.get(i + 1) == '\n' ? 2 : 1;
+    }
+
+    /**
+     * Writes the body to out, bare CRs and LFs read as CRLF, and closes
+     * out. A {@link ByteBufferSink} converting the line endings itself
+     * receives the whole body from the mapping, which it must not keep
+     * once written; other streams receive converted copies of it in large
+     * chunks.
+     *
+     * @param out usually the output stream of a body hasher
+     * @throws IOException on I/O errors, or when this message is closed
+     */
+    public void writeBody(OutputStream out) throws IOException {
+        if (body == null) {
+            throw new IOException("Message closed");
+        }
+        if (out instanceof ByteBufferSink && ((ByteBufferSink) out).convertLineEndings()) {
+            ((ByteBufferSink) out).write(body.duplicate());
+        } else {
+            writeChunks(out);
+        }
+        out.close();
+    }
+
+    private void writeChunks(OutputStream out) throws IOException {
+        ByteBuffer source = body.duplicate();
+        byte[] chunk = new byte[Math.min(CHUNK_SIZE, Math.max(source.remaining(), 1))];
+        boolean previousCR = false;
+        while (source.hasRemaining()) {
+            int length = Math.min(chunk.length, source.remaining());
+            source.get(chunk, 0, length);
+            int start = 0;
+            for (int i = 0; i < length; i++) {
+                byte b = chunk[i];
+                if (previousCR && b != '\n') {
+                    out.write(chunk, start, i - start);
+                    out.write('\n');
+                    start = i;
+                } else if (!previousCR && b == '\n') {
+                    out.write(chunk, start, i - start);
+                    out.write('\r');
+                    start = i;
+                }
+                previousCR = b == '\r';
+            }
+            out.write(chunk, start, length - start);
+        }
+        if (previousCR) {
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Releases the mapping, if any: the body cannot be written anymore, the
+     * header fields remain available. It must not be called while the body
+     * is being written.
+     */
+    public void close() {
+        body = null;
+        ByteBuffer mapped = mapping;
+        mapping = null;
+        if (mapped != null && INVOKE_CLEANER != null) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, mapped);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // left to the garbage collector.
+            }
+        }
+    }
+
+    /**
+     * @see org.apache.james.jdkim.api.Headers#getFields()
+     */
+    public List<String> getFields() {
+        return headers.getFields();
+    }
+
+    /**
+     * @see org.apache.james.jdkim.api.Headers#getFields(java.lang.String)
+     */
+    public List<String> getFields(final String name) {
+        return headers.getFields(name);
+    }
+}
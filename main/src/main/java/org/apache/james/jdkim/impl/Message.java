@@ -42,6 +42,7 @@ import java.util.List;
 public class Message implements Headers {
 
     private final org.apache.james.mime4j.dom.Message message;
+    private final IndexedHeaders headers;
 
     /**
      * Creates a new <code>Header</code> from the specified stream.
@@ -54,6 +55,8 @@ public class Message implements Headers {
         MessageBuilder mb = newMessageBuilder().newMessageBuilder();
 
         this.message = mb.parseMessage(new EOLConvertingInputStream(is));
+        // fields are serialized once, lookups then use the index.
+        this.headers = new IndexedHeaders(convertFields(message.getHeader().getFields()));
     }
 
     private MessageServiceFactory newMessageBuilder() throws MimeException {
@@ -82,8 +85,7 @@ public class Message implements Headers {
      * @see org.apache.james.jdkim.api.Headers#getFields()
      */
     public List<String> getFields() {
-        List<Field> res = message.getHeader().getFields();
-        return convertFields(res);
+        return headers.getFields();
     }
 
     private List<String> convertFields(List<Field> res) {
@@ -94,8 +96,9 @@ public class Message implements Headers {
         } catch (MimeException e1) {
             return res2;
         }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
         for (Field f : res) {
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            bos.reset();
             String field = null;
             try {
                 mw.writeField(f, bos);
@@ -113,7 +116,7 @@ public class Message implements Headers {
      * @see org.apache.james.jdkim.api.Headers#getFields(java.lang.String)
      */
     public List<String> getFields(final String name) {
-        return convertFields(message.getHeader().getFields(name));
+        return headers.getFields(name);
     }
 
     /**
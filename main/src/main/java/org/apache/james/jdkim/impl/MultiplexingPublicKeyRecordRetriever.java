@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.james.jdkim.api.PublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.TimedRecords;
 import org.apache.james.jdkim.exceptions.PermFailException;
 import org.apache.james.jdkim.exceptions.TempFailException;
 
@@ -67,12 +68,22 @@ public class MultiplexingPublicKeyRecordRetriever implements
 
     public List<String> getRecords(CharSequence methodAndOption, CharSequence selector,
             CharSequence token) throws TempFailException, PermFailException {
+        return getRetriever(methodAndOption).getRecords(methodAndOption, selector, token);
+    }
+
+    public TimedRecords getTimedRecords(CharSequence methodAndOption, CharSequence selector,
+            CharSequence token) throws TempFailException, PermFailException {
+        return getRetriever(methodAndOption).getTimedRecords(methodAndOption, selector, token);
+    }
+
+    private PublicKeyRecordRetriever getRetriever(CharSequence methodAndOption)
+            throws PermFailException {
         int pos = methodAndOption.toString().indexOf('/');
         String method = pos != -1 ? methodAndOption.subSequence(0, pos)
                 .toString() : methodAndOption.toString();
         PublicKeyRecordRetriever pkrr = retrievers.get(method);
         if (pkrr != null) {
-            return pkrr.getRecords(methodAndOption, selector, token);
+            return pkrr;
         } else {
             throw new PermFailException(
                     "Unknown public key record retrieving method: "
@@ -80,4 +91,4 @@ public class MultiplexingPublicKeyRecordRetriever implements
         }
     }
 
-}
\ No newline at end of file
+}
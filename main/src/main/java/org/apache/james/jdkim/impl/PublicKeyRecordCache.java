@@ -0,0 +1,96 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jdkim.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.james.jdkim.api.PublicKeyRecord;
+
+/**
+ * Keeps the last used validated PublicKeyRecord instances indexed by their
+ * raw TXT record, so that the parsing and the key decoding are not repeated
+ * for every message signed with the same key.
+ * <p>
+ * Records failing the parsing or the validation are not cached. Records
+ * whose key fails to decode are, the record remembers the failure.
+ */
+public class PublicKeyRecordCache {
+
+    private final Map<String, PublicKeyRecord> cache;
+
+    public PublicKeyRecordCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.cache = new LinkedHashMap<String, PublicKeyRecord>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry<String, PublicKeyRecord> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached record or parses it using the given function.
+     *
+     * @param record the raw TXT record
+     * @param parser creates and validates a PublicKeyRecord, throwing
+     *               IllegalStateException on invalid records
+     * @return the validated record
+     * @throws IllegalStateException when the parser rejects the record
+     */
+    public PublicKeyRecord get(String record, Function<String, PublicKeyRecord> parser) {
+        PublicKeyRecord pk;
+        synchronized (cache) {
+            pk = cache.get(record);
+        }
+        if (pk == null) {
+            // parsing happens outside of the lock: concurrent misses on the
+            // same record may parse it twice but will never block each other.
+            pk = parser.apply(record);
+            synchronized (cache) {
+                cache.put(record, pk);
+            }
+        }
+        return pk;
+    }
+
+    /**
+     * Drops every cached record.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return the number of cached records.
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
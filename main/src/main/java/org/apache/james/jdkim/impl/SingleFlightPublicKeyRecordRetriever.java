@@ -0,0 +1,209 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jdkim.impl;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.james.jdkim.api.AsyncPublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.PublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.TimedRecords;
+import org.apache.james.jdkim.exceptions.PermFailException;
+import org.apache.james.jdkim.exceptions.TempFailException;
+
+/**
+ * Makes concurrent identical lookups share a single call to another
+ * PublicKeyRecordRetriever: the first caller runs the lookup while the
+ * others wait for its result or its failure.
+ * <p>
+ * When an AsyncPublicKeyRecordRetriever is given asynchronous lookups are
+ * run by it, and are coalesced with the blocking ones.
+ * <p>
+ * Nothing is kept once the lookup completes, see
+ * {@link CachingPublicKeyRecordRetriever} for caching.
+ */
+public class SingleFlightPublicKeyRecordRetriever implements PublicKeyRecordRetriever,
+        AsyncPublicKeyRecordRetriever {
+
+    private final PublicKeyRecordRetriever retriever;
+    private final AsyncPublicKeyRecordRetriever asyncRetriever;
+    private final ConcurrentMap<String, CompletableFuture<TimedRecords>> inFlight = new ConcurrentHashMap<>();
+
+    public SingleFlightPublicKeyRecordRetriever(PublicKeyRecordRetriever retriever) {
+        this(retriever, null);
+    }
+
+    /**
+     * @param retriever      runs the blocking lookups
+     * @param asyncRetriever runs the asynchronous lookups, when null they
+     *                       are run by retriever in the calling thread
+     */
+    public SingleFlightPublicKeyRecordRetriever(PublicKeyRecordRetriever retriever,
+            AsyncPublicKeyRecordRetriever asyncRetriever) {
+        this.retriever = retriever;
+        this.asyncRetriever = asyncRetriever;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> getRecords(CharSequence methodAndOption,
+            CharSequence selector, CharSequence token)
+            throws TempFailException, PermFailException {
+        return getTimedRecords(methodAndOption, selector, token).getRecords();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public TimedRecords getTimedRecords(CharSequence methodAndOption,
+            CharSequence selector, CharSequence token)
+            throws TempFailException, PermFailException {
+        // DNS names are case insensitive
+        String key = methodAndOption + "|"
+                + (selector + "._domainkey." + token).toLowerCase(Locale.US);
+
+        CompletableFuture<TimedRecords> lookup = new CompletableFuture<>();
+        CompletableFuture<TimedRecords> running = inFlight.putIfAbsent(key, lookup);
+        if (running == null) {
+            try {
+                TimedRecords result = retriever.getTimedRecords(methodAndOption, selector, token);
+                lookup.complete(result);
+                return result;
+            } catch (TempFailException | PermFailException | RuntimeException | Error e) {
+                lookup.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, lookup);
+            }
+        }
+        return await(running);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CompletableFuture<List<String>> getRecordsAsync(CharSequence methodAndOption,
+            CharSequence selector, CharSequence token) {
+        return getTimedRecordsAsync(methodAndOption, selector, token).thenApply(TimedRecords::getRecords);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CompletableFuture<TimedRecords> getTimedRecordsAsync(CharSequence methodAndOption,
+            CharSequence selector, CharSequence token) {
+        if (asyncRetriever == null) {
+            CompletableFuture<TimedRecords> result = new CompletableFuture<>();
+            try {
+                result.complete(getTimedRecords(methodAndOption, selector, token));
+            } catch (TempFailException | PermFailException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+        String key = methodAndOption + "|"
+                + (selector + "._domainkey." + token).toLowerCase(Locale.US);
+
+        CompletableFuture<TimedRecords> lookup = new CompletableFuture<>();
+        CompletableFuture<TimedRecords> running = inFlight.putIfAbsent(key, lookup);
+        if (running == null) {
+            running = lookup;
+            CompletableFuture<TimedRecords> started;
+            try {
+                started = asyncRetriever.getTimedRecordsAsync(methodAndOption, selector, token);
+            } catch (RuntimeException e) {
+                started = new CompletableFuture<>();
+                started.completeExceptionally(e);
+            }
+            started.whenComplete((result, error) -> {
+                inFlight.remove(key, lookup);
+                if (error != null) {
+                    lookup.completeExceptionally(unwrap(error));
+                } else {
+                    lookup.complete(result);
+                }
+            });
+        }
+        // every caller gets its own future and its own exception.
+        return running.handle((result, error) -> {
+            if (error != null) {
+                throw new CompletionException(copy(unwrap(error)));
+            }
+            return result;
+        });
+    }
+
+    private TimedRecords await(CompletableFuture<TimedRecords> running)
+            throws TempFailException, PermFailException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return running.get();
+                } catch (InterruptedException e) {
+                    // keep waiting: the lookup is bounded by the retriever
+                    // timeouts, we only restore the flag afterwards.
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // every caller gets its own exception as callers attach
+                    // their signature record to it.
+                    Throwable cause = copy(e.getCause());
+                    if (cause instanceof TempFailException) {
+                        throw (TempFailException) cause;
+                    } else if (cause instanceof PermFailException) {
+                        throw (PermFailException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static Throwable copy(Throwable error) {
+        if (error instanceof TempFailException) {
+            return new TempFailException(error.getMessage());
+        } else if (error instanceof PermFailException) {
+            return new PermFailException(error.getMessage(), (Exception) error);
+        }
+        return error;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,159 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.impl;
+
+import org.apache.james.jdkim.api.Headers;
+import org.apache.james.mime4j.io.EOLConvertingInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The header of a message, read from a stream by a lightweight byte level
+ * parser. Unlike {@link Message} no DOM is built: only the header block is
+ * kept in memory, the body is left in the stream and can be read once from
+ * {@link #getBodyInputStream()}.
+ * <p>
+ * Line endings are converted to CRLF and fields are returned in the same
+ * form as {@link Message} does: raw, folding included, without the
+ * terminating CRLF. Lines which are not valid fields (e.g. an mbox "From "
+ * line) are ignored.
+ */
+public class StreamingMessage implements Headers {
+
+    // same limits as the ones Message configures on mime4j.
+    private static final int MAX_LINE_LENGTH = 10000;
+    private static final int MAX_HEADER_LENGTH = 30000;
+
+    private final InputStream body;
+    private final List<String> fields = new ArrayList<>();
+    private final IndexedHeaders headers;
+    private int lineStart;
+
+    /**
+     * Reads the header block, leaving the stream positioned at the start of
+     * the body.
+     *
+     * @param is the stream to read the message from.
+     * @throws IOException on I/O errors or when a line or a field exceeds
+     *                     the allowed length.
+     */
+    public StreamingMessage(InputStream is) throws IOException {
+        this.body = new EOLConvertingInputStream(new BufferedInputStream(is));
+
+        ByteArrayOutputStream field = new ByteArrayOutputStream();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (readLine(line)) {
+            if (line.size() == 0) {
+                break;
+            }
+            if ((lineStart == ' ' || lineStart == '\t') && field.size() > 0) {
+                field.write('\r');
+                field.write('\n');
+            } else {
+                addField(field);
+                field.reset();
+            }
+            line.writeTo(field);
+            if (field.size() > MAX_HEADER_LENGTH) {
+                throw new IOException("Maximum header length limit exceeded");
+            }
+            line.reset();
+        }
+        addField(field);
+        headers = new IndexedHeaders(fields);
+    }
+
+    /**
+     * Reads a line, CRLF excluded, remembering its first byte.
+     *
+     * @return false when the stream ended before any byte of the line
+     */
+    private boolean readLine(ByteArrayOutputStream line) throws IOException {
+        int b;
+        lineStart = -1;
+        while ((b = body.read()) != -1) {
+            if (b == '\r') {
+                // the stream converted line endings, so a LF always follows.
+                body.read();
+                return true;
+            }
+            if (lineStart == -1) {
+                lineStart = b;
+            }
+            line.write(b);
+            if (line.size() > MAX_LINE_LENGTH) {
+                throw new IOException("Maximum line length limit exceeded");
+            }
+        }
+        return line.size() > 0;
+    }
+
+    private void addField(ByteArrayOutputStream field) {
+        if (field.size() == 0) {
+            return;
+        }
+        byte[] raw = field.toByteArray();
+        int colon = 0;
+        while (colon < raw.length && raw[colon] != ':') {
+            colon++;
+        }
+        int nameEnd = colon;
+        while (nameEnd > 0 && (raw[nameEnd - 1] == ' ' || raw[nameEnd - 1] == '\t')) {
+            nameEnd--;
+        }
+        if (colon == raw.length || nameEnd == 0) {
+            return;
+        }
+        for (int i = 0; i < nameEnd; i++) {
+            if (raw[i] <= ' ' || raw[i] >= 127) {
+                return;
+            }
+        }
+        fields.add(new String(raw));
+    }
+
+    /**
+     * The body, to be read once. Line endings are converted to CRLF.
+     *
+     * @return the body stream
+     */
+    public InputStream getBodyInputStream() {
+        return body;
+    }
+
+    /**
+     * @see org.apache.james.jdkim.api.Headers#getFields()
+     */
+    public List<String> getFields() {
+        return headers.getFields();
+    }
+
+    /**
+     * @see org.apache.james.jdkim.api.Headers#getFields(java.lang.String)
+     */
+    public List<String> getFields(final String name) {
+        return headers.getFields(name);
+    }
+}
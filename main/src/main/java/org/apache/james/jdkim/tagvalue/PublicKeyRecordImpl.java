@@ -25,7 +25,6 @@ import org.apache.james.jdkim.api.PublicKeyRecord;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
-import java.security.interfaces.RSAPublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.ArrayList;
@@ -47,6 +46,19 @@ public class PublicKeyRecordImpl extends TagValue implements PublicKeyRecord {
     private static final Pattern hyphenatedWordPattern = Pattern
             .compile("^[a-zA-Z]([a-zA-Z0-9-]*[a-zA-Z0-9])?$");
 
+    private static final String ED25519 = "ed25519";
+    private static final int ED25519_KEY_LENGTH = 32;
+    // SEQUENCE { SEQUENCE { OID 1.3.101.112 }, BIT STRING { 32 bytes } }
+    private static final byte[] ED25519_SPKI_PREFIX = {
+            0x30, 0x2a, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x70, 0x03, 0x21, 0x00 };
+
+    // the record is never changed after parsing, so we keep the costly
+    // decoded key and the compiled pattern once computed.
+    private volatile PublicKey publicKey;
+    // a key failing to decode fails the same way every time.
+    private volatile String publicKeyError;
+    private volatile Pattern compiledGranularity;
+
     public PublicKeyRecordImpl(String data) {
         super(data);
     }
@@ -124,6 +136,15 @@ public class PublicKeyRecordImpl extends TagValue implements PublicKeyRecord {
      * @see org.apache.james.jdkim.api.PublicKeyRecord#getGranularityPattern()
      */
     public Pattern getGranularityPattern() {
+        Pattern pattern = compiledGranularity;
+        if (pattern == null) {
+            pattern = compileGranularityPattern();
+            compiledGranularity = pattern;
+        }
+        return pattern;
+    }
+
+    private Pattern compileGranularityPattern() {
         String g = getValue("g").toString();
         int pStar = g.indexOf('*');
         if (VALIDATION) {
@@ -176,15 +197,35 @@ public class PublicKeyRecordImpl extends TagValue implements PublicKeyRecord {
      * @see org.apache.james.jdkim.api.PublicKeyRecord#getPublicKey()
      */
     public PublicKey getPublicKey() {
+        PublicKey key = publicKey;
+        if (key == null) {
+            String error = publicKeyError;
+            if (error != null) {
+                throw new IllegalStateException(error);
+            }
+            try {
+                key = decodePublicKey();
+            } catch (IllegalStateException e) {
+                publicKeyError = e.getMessage();
+                throw e;
+            }
+            publicKey = key;
+        }
+        return key;
+    }
+
+    private PublicKey decodePublicKey() {
         try {
             String p = getValue("p").toString();
             byte[] key = Base64.decodeBase64(p.getBytes());
+            String k = getValue("k").toString();
+            if (ED25519.equalsIgnoreCase(k)) {
+                return decodeEd25519PublicKey(key);
+            }
             KeyFactory keyFactory;
-            keyFactory = KeyFactory.getInstance(getValue("k").toString());
+            keyFactory = KeyFactory.getInstance(k);
             X509EncodedKeySpec pubSpec = new X509EncodedKeySpec(key);
-            RSAPublicKey rsaKey;
-            rsaKey = (RSAPublicKey) keyFactory.generatePublic(pubSpec);
-            return rsaKey;
+            return keyFactory.generatePublic(pubSpec);
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalStateException("Unknown algorithm: "
                     + e.getMessage());
@@ -194,4 +235,20 @@ public class PublicKeyRecordImpl extends TagValue implements PublicKeyRecord {
         }
     }
 
+    /**
+     * RFC 8463 publishes the raw 32 bytes key, while the JDK EdDSA provider
+     * (Java 15+) decodes a SubjectPublicKeyInfo structure.
+     */
+    private static PublicKey decodeEd25519PublicKey(byte[] key)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        if (key.length != ED25519_KEY_LENGTH) {
+            throw new InvalidKeySpecException("Ed25519 keys are " + ED25519_KEY_LENGTH
+                    + " bytes long, found " + key.length);
+        }
+        byte[] spki = new byte[ED25519_SPKI_PREFIX.length + key.length];
+        System.arraycopy(ED25519_SPKI_PREFIX, 0, spki, 0, ED25519_SPKI_PREFIX.length);
+        System.arraycopy(key, 0, spki, ED25519_SPKI_PREFIX.length, key.length);
+        return KeyFactory.getInstance("Ed25519").generatePublic(new X509EncodedKeySpec(spki));
+    }
+
 }
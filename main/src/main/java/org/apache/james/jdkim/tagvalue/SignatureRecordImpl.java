@@ -24,6 +24,7 @@ import static org.apache.james.jdkim.parser.DKIMQuotedPrintable.dkimQuotedPrinta
 import org.apache.commons.codec.binary.Base64;
 import org.apache.james.jdkim.api.SignatureRecord;
 
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -34,6 +35,18 @@ public class SignatureRecordImpl extends TagValue implements SignatureRecord {
     // %d59-126
     private static final Pattern hdrNamePattern = Pattern.compile("^[^: \r\n\t]+$");
 
+    // the values below are derived from the tags the first time they are
+    // requested and dropped whenever a tag is changed.
+    private volatile List<CharSequence> headers;
+    private volatile CharSequence identity;
+    private volatile CharSequence hashKeyType;
+    private volatile CharSequence hashMethod;
+    private volatile CharSequence hashAlgo;
+    private volatile String bodyCanonicalisationMethod;
+    private volatile String headerCanonicalisationMethod;
+    private volatile byte[] bodyHash;
+    private volatile byte[] signature;
+
     public SignatureRecordImpl(String data) {
         super(data);
         validate();
@@ -76,7 +89,7 @@ public class SignatureRecordImpl extends TagValue implements SignatureRecord {
 
         if (!identity.toString().toLowerCase().endsWith(
                 ("@" + getValue("d")).toLowerCase())
-                && !getIdentity().toString().toLowerCase().endsWith(
+                && !identity.toString().toLowerCase().endsWith(
                 ("." + getValue("d")).toLowerCase()))
             throw new IllegalStateException("Identity (i=) domain mismatch: expected [optional]@[optional.]domain-from-d-attribute");
 
@@ -129,8 +142,13 @@ public class SignatureRecordImpl extends TagValue implements SignatureRecord {
      * @see org.apache.james.jdkim.api.SignatureRecord#getHeaders()
      */
     public List<CharSequence> getHeaders() {
-        return stringToColonSeparatedList(getValue("h").toString(),
-                hdrNamePattern);
+        List<CharSequence> result = headers;
+        if (result == null) {
+            result = Collections.unmodifiableList(stringToColonSeparatedList(
+                    getValue("h").toString(), hdrNamePattern));
+            headers = result;
+        }
+        return result;
     }
 
     // If i= is unspecified the default is @d
@@ -157,13 +175,27 @@ public class SignatureRecordImpl extends TagValue implements SignatureRecord {
      * @see org.apache.james.jdkim.api.SignatureRecord#getIdentity()
      */
     public CharSequence getIdentity() {
-        return dkimQuotedPrintableDecode(getValue("i"));
+        CharSequence result = identity;
+        if (result == null) {
+            result = dkimQuotedPrintableDecode(getValue("i"));
+            identity = result;
+        }
+        return result;
     }
 
     /**
      * @see org.apache.james.jdkim.api.SignatureRecord#getHashKeyType()
      */
     public CharSequence getHashKeyType() {
+        CharSequence result = hashKeyType;
+        if (result == null) {
+            result = parseHashKeyType();
+            hashKeyType = result;
+        }
+        return result;
+    }
+
+    private CharSequence parseHashKeyType() {
         String a = getValue("a").toString();
         int pHyphen = a.indexOf('-');
         // TODO x-sig-a-tag-h = ALPHA *(ALPHA / DIGIT)
@@ -177,6 +209,15 @@ public class SignatureRecordImpl extends TagValue implements SignatureRecord {
      * @see org.apache.james.jdkim.api.SignatureRecord#getHashMethod()
      */
     public CharSequence getHashMethod() {
+        CharSequence result = hashMethod;
+        if (result == null) {
+            result = parseHashMethod();
+            hashMethod = result;
+        }
+        return result;
+    }
+
+    private CharSequence parseHashMethod() {
         String a = getValue("a").toString();
         int pHyphen = a.indexOf('-');
         // TODO x-sig-a-tag-h = ALPHA *(ALPHA / DIGIT)
@@ -189,6 +230,15 @@ public class SignatureRecordImpl extends TagValue implements SignatureRecord {
      * @see org.apache.james.jdkim.api.SignatureRecord#getHashAlgo()
      */
     public CharSequence getHashAlgo() {
+        CharSequence result = hashAlgo;
+        if (result == null) {
+            result = parseHashAlgo();
+            hashAlgo = result;
+        }
+        return result;
+    }
+
+    private CharSequence parseHashAlgo() {
         String a = getValue("a").toString();
         int pHyphen = a.indexOf('-');
         if (pHyphen == -1)
@@ -215,11 +265,22 @@ public class SignatureRecordImpl extends TagValue implements SignatureRecord {
     }
 
     public byte[] getBodyHash() {
-        return Base64.decodeBase64(getValue("bh").toString().getBytes());
+        byte[] result = bodyHash;
+        if (result == null) {
+            result = Base64.decodeBase64(getValue("bh").toString().getBytes());
+            bodyHash = result;
+        }
+        // callers own the returned array
+        return result.clone();
     }
 
     public byte[] getSignature() {
-        return Base64.decodeBase64(getValue("b").toString().getBytes());
+        byte[] result = signature;
+        if (result == null) {
+            result = Base64.decodeBase64(getValue("b").toString().getBytes());
+            signature = result;
+        }
+        return result.clone();
     }
 
     public CharSequence getRawSignature() {
@@ -241,6 +302,15 @@ public class SignatureRecordImpl extends TagValue implements SignatureRecord {
     }
 
     public String getBodyCanonicalisationMethod() {
+        String result = bodyCanonicalisationMethod;
+        if (result == null) {
+            result = parseBodyCanonicalisationMethod();
+            bodyCanonicalisationMethod = result;
+        }
+        return result;
+    }
+
+    private String parseBodyCanonicalisationMethod() {
         String c = getValue("c").toString();
         int pSlash = c.indexOf("/");
         if (pSlash != -1) {
@@ -251,6 +321,15 @@ public class SignatureRecordImpl extends TagValue implements SignatureRecord {
     }
 
     public String getHeaderCanonicalisationMethod() {
+        String result = headerCanonicalisationMethod;
+        if (result == null) {
+            result = parseHeaderCanonicalisationMethod();
+            headerCanonicalisationMethod = result;
+        }
+        return result;
+    }
+
+    private String parseHeaderCanonicalisationMethod() {
         String c = getValue("c").toString();
         int pSlash = c.indexOf("/");
         if (pSlash != -1) {
@@ -273,6 +352,19 @@ public class SignatureRecordImpl extends TagValue implements SignatureRecord {
         return res;
     }
 
+    protected void setValue(String tag, String value) {
+        super.setValue(tag, value);
+        headers = null;
+        identity = null;
+        hashKeyType = null;
+        hashMethod = null;
+        hashAlgo = null;
+        bodyCanonicalisationMethod = null;
+        headerCanonicalisationMethod = null;
+        bodyHash = null;
+        signature = null;
+    }
+
     public void setSignature(byte[] newSignature) {
         String signature = new String(Base64.encodeBase64(newSignature));
         setValue("b", signature);
@@ -289,6 +381,6 @@ public class SignatureRecordImpl extends TagValue implements SignatureRecord {
     }
 
     public String toUnsignedString() {
-        return toString().replaceFirst("b=[^;]*", "b=");
+        return toStringWithEmptyValue("b");
     }
 }
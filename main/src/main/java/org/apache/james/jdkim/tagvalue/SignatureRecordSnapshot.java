@@ -0,0 +1,206 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.tagvalue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.james.jdkim.api.HashMethod;
+import org.apache.james.jdkim.api.SignatureRecord;
+import org.apache.james.jdkim.api.SigningAlgorithm;
+
+/**
+ * An immutable SignatureRecord whose fields are all decoded once, when it is
+ * created, so that verifying a signature never parses a tag again.
+ * <p>
+ * This is the record the verifier works with: the setters are not
+ * supported, use {@link SignatureRecordImpl} or
+ * {@link SignatureRecordTemplate} to build a signature.
+ */
+public final class SignatureRecordSnapshot implements SignatureRecord {
+
+    private final String text;
+    private final String unsignedText;
+    private final List<CharSequence> headers;
+    private final CharSequence identity;
+    private final CharSequence identityLocalPart;
+    private final CharSequence hashKeyType;
+    private final CharSequence hashMethod;
+    private final CharSequence hashAlgo;
+    private final Optional<SigningAlgorithm> signingAlgorithm;
+    private final Optional<HashMethod> hashingMethod;
+    private final CharSequence selector;
+    private final CharSequence dToken;
+    private final byte[] bodyHash;
+    private final int bodyHashLimit;
+    private final String headerCanonicalisationMethod;
+    private final String bodyCanonicalisationMethod;
+    private final List<CharSequence> recordLookupMethods;
+    private final byte[] signature;
+    private final CharSequence rawSignature;
+    private final Long signatureTimestamp;
+
+    /**
+     * Parses and validates a DKIM-Signature value.
+     *
+     * @param data the tag list of a DKIM-Signature field
+     * @throws IllegalStateException if the record is invalid or one of its
+     *                               tags cannot be decoded
+     */
+    public SignatureRecordSnapshot(String data) {
+        this(new SignatureRecordImpl(data));
+    }
+
+    /**
+     * Decodes every field of an already validated record.
+     *
+     * @param record the record to copy
+     * @throws IllegalStateException if one of its tags cannot be decoded
+     */
+    public SignatureRecordSnapshot(SignatureRecord record) {
+        text = record.toString();
+        unsignedText = record.toUnsignedString();
+        headers = Collections.unmodifiableList(record.getHeaders());
+        identity = record.getIdentity().toString();
+        try {
+            identityLocalPart = record.getIdentityLocalPart().toString();
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalStateException("Identity (i=) has no local part: " + identity, e);
+        }
+        hashKeyType = record.getHashKeyType().toString();
+        hashMethod = record.getHashMethod().toString();
+        hashAlgo = record.getHashAlgo().toString();
+        signingAlgorithm = record.getSigningAlgorithm();
+        hashingMethod = record.getHashingMethod();
+        selector = record.getSelector().toString();
+        dToken = record.getDToken().toString();
+        bodyHash = record.getBodyHash();
+        try {
+            bodyHashLimit = record.getBodyHashLimit();
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid body length limit: " + e.getMessage(), e);
+        }
+        headerCanonicalisationMethod = record.getHeaderCanonicalisationMethod();
+        bodyCanonicalisationMethod = record.getBodyCanonicalisationMethod();
+        recordLookupMethods = Collections.unmodifiableList(record.getRecordLookupMethods());
+        signature = record.getSignature();
+        rawSignature = record.getRawSignature().toString();
+        try {
+            signatureTimestamp = record.getSignatureTimestamp();
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid signature timestamp: " + e.getMessage(), e);
+        }
+    }
+
+    public List<CharSequence> getHeaders() {
+        return headers;
+    }
+
+    public CharSequence getIdentityLocalPart() {
+        return identityLocalPart;
+    }
+
+    public CharSequence getIdentity() {
+        return identity;
+    }
+
+    public CharSequence getHashKeyType() {
+        return hashKeyType;
+    }
+
+    public CharSequence getHashMethod() {
+        return hashMethod;
+    }
+
+    public CharSequence getHashAlgo() {
+        return hashAlgo;
+    }
+
+    public Optional<SigningAlgorithm> getSigningAlgorithm() {
+        return signingAlgorithm;
+    }
+
+    public Optional<HashMethod> getHashingMethod() {
+        return hashingMethod;
+    }
+
+    public CharSequence getSelector() {
+        return selector;
+    }
+
+    public CharSequence getDToken() {
+        return dToken;
+    }
+
+    public byte[] getBodyHash() {
+        return bodyHash.clone();
+    }
+
+    public int getBodyHashLimit() {
+        return bodyHashLimit;
+    }
+
+    public String getHeaderCanonicalisationMethod() {
+        return headerCanonicalisationMethod;
+    }
+
+    public String getBodyCanonicalisationMethod() {
+        return bodyCanonicalisationMethod;
+    }
+
+    public List<CharSequence> getRecordLookupMethods() {
+        return recordLookupMethods;
+    }
+
+    /**
+     * The record has been validated when it was created.
+     */
+    public void validate() {
+    }
+
+    public byte[] getSignature() {
+        return signature.clone();
+    }
+
+    public CharSequence getRawSignature() {
+        return rawSignature;
+    }
+
+    public void setSignature(byte[] newSignature) {
+        throw new UnsupportedOperationException("SignatureRecordSnapshot is immutable");
+    }
+
+    public void setBodyHash(byte[] newBodyHash) {
+        throw new UnsupportedOperationException("SignatureRecordSnapshot is immutable");
+    }
+
+    public String toUnsignedString() {
+        return unsignedText;
+    }
+
+    public Long getSignatureTimestamp() {
+        return signatureTimestamp;
+    }
+
+    public String toString() {
+        return text;
+    }
+}
@@ -48,6 +48,16 @@ public class SignatureRecordTemplate extends TagValue implements SignatureRecord
         );
     }
 
+    /**
+     * Copies a template, e.g. to sign another message with it, without
+     * parsing and validating it again.
+     *
+     * @param template the template to copy
+     */
+    public SignatureRecordTemplate(SignatureRecordTemplate template) {
+        super(template);
+    }
+
     protected void init() {
         mandatoryTags.add("v");
         mandatoryTags.add("d");
@@ -313,6 +323,6 @@ public class SignatureRecordTemplate extends TagValue implements SignatureRecord
     }
 
     public String toUnsignedString() {
-        return toString().replaceFirst("b=[^;]*", "b=");
+        return toStringWithEmptyValue("b");
     }
 }
@@ -33,17 +33,43 @@ import java.util.regex.Pattern;
  */
 public class TagValue {
 
-    private static final boolean DEBUG = false;
     protected static final boolean VALIDATION = true;
 
-    private static final Pattern tagPattern = Pattern
-            .compile("^[A-Za-z][A-Za-z0-9_]*$");
-    // Use possessive matching to avoid heavy stack usage
-    private static final String tval = "[^; \t\r\n]++";
-    // validate value chars
-    // Use possessive matching to avoid heavy stack usage
-    private static final Pattern valuePattern = Pattern.compile("^(?:" + tval
-            + "(?:(?:(?:\r\n)?[\t ])++" + tval + ")*+)?$");
+    /**
+     * A parsed value: a span of the parsed string, copied out of it when
+     * first read.
+     */
+    private static final class Value implements CharSequence {
+        private final String data;
+        private final int start;
+        private final int end;
+        private String value;
+
+        private Value(String data, int start, int end) {
+            this.data = data;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int length() {
+            return end - start;
+        }
+
+        public char charAt(int index) {
+            return data.charAt(start + index);
+        }
+
+        public CharSequence subSequence(int from, int to) {
+            return toString().subSequence(from, to);
+        }
+
+        public String toString() {
+            if (value == null) {
+                value = data.substring(start, end);
+            }
+            return value;
+        }
+    }
 
     // we may use a TreeMap because we may need to know original order.
     private final Map<String, CharSequence> tagValues;
@@ -51,6 +77,9 @@ public class TagValue {
     protected final Set<String> mandatoryTags = new HashSet<>();
     protected final Map<String, CharSequence> defaults = new HashMap<>();
     private String stringRepresentation = null;
+    // where each value starts and ends in stringRepresentation, surrounding
+    // whitespace included.
+    private final Map<String, int[]> valueSpans = new HashMap<>();
 
     protected Set<String> tagSet() {
         return tagValues.keySet();
@@ -61,47 +90,46 @@ public class TagValue {
     
     protected CharSequence trimFWS(CharSequence data, int tStart, int tStop,
             boolean trimWSP) {
-        if (DEBUG)
-            System.out.println("1[" + data + "]" + tStart + "|" + tStop + "="
-                    + data.subSequence(tStart, tStop + 1) + "]");
-        // rimozione di FWS a inizio selezione
-        while (tStart < tStop
-                && (data.charAt(tStart) == ' ' || data.charAt(tStart) == '\t')
+        tStart = skipLeadingFWS(data, tStart, tStop);
+        tStop = skipTrailingFWS(data, tStart, tStop);
+        if (trimWSP) {
+            return trimWSP(data, tStart, tStop);
+        } else {
+            return data.subSequence(tStart, tStop + 1);
+        }
+    }
+
+    // rimozione di FWS a inizio selezione
+    private static int skipLeadingFWS(CharSequence data, int tStart, int tStop) {
+        while (tStart < tStop && isWSP(data.charAt(tStart))
                 || (tStart < tStop - 2 && data.charAt(tStart) == '\r'
-                        && data.charAt(tStart + 1) == '\n' && (data
-                        .charAt(tStart + 2) == ' ' || data.charAt(tStart + 2) == '\t'))) {
+                        && data.charAt(tStart + 1) == '\n' && isWSP(data.charAt(tStart + 2)))) {
             if (data.charAt(tStart) == '\r')
                 tStart += 3;
             else
                 tStart++;
         }
+        return tStart;
+    }
 
-        if (DEBUG)
-            System.out.println("2[" + data + "]" + tStart + "|" + tStop + "="
-                    + data.subSequence(tStart, tStop + 1) + "]");
-        // rimozione di FWS a fine selezione.
-        while (tStart < tStop
-                && (data.charAt(tStop) == ' ' || data.charAt(tStop) == '\t')) {
+    // rimozione di FWS a fine selezione.
+    private static int skipTrailingFWS(CharSequence data, int tStart, int tStop) {
+        while (tStart < tStop && isWSP(data.charAt(tStop))) {
             tStop--;
             while ((tStart <= tStop - 1 && data.charAt(tStop) == '\n' && data
                     .charAt(tStop - 1) == '\r')
-                    || (tStart < tStop && (data.charAt(tStop) == ' ' || data
-                            .charAt(tStop) == '\t'))) {
+                    || (tStart < tStop && isWSP(data.charAt(tStop)))) {
                 if (data.charAt(tStop) == '\n')
                     tStop -= 2;
                 else
                     tStop--;
             }
         }
+        return tStop;
+    }
 
-        if (DEBUG)
-            System.out.println("3[" + data + "]" + tStart + "|" + tStop + "="
-                    + data.subSequence(tStart, tStop + 1) + "]");
-        if (trimWSP) {
-            return trimWSP(data, tStart, tStop);
-        } else {
-            return data.subSequence(tStart, tStop + 1);
-        }
+    private static boolean isWSP(char c) {
+        return c == ' ' || c == '\t';
     }
 
     private CharSequence trimWSP(CharSequence data, int vStart, int vStop) {
@@ -122,6 +150,20 @@ public class TagValue {
         parse(data);
     }
 
+    /**
+     * Copies the tags of an already parsed and validated instance, without
+     * parsing them again.
+     *
+     * @param other the instance to copy
+     */
+    protected TagValue(TagValue other) {
+        tagValues = newTagValue();
+        init();
+        tagValues.putAll(other.tagValues);
+        stringRepresentation = other.stringRepresentation;
+        valueSpans.putAll(other.valueSpans);
+    }
+
     protected Map<String, CharSequence> newTagValue() {
         // extensions may override this to use TreeMaps in order to keep track
         // of orders
@@ -133,65 +175,132 @@ public class TagValue {
 
     /**
      * subclasses have to make sure tagValues is initialized during init().
+     * <p>
+     * The tag-list is scanned once, char by char: each tag-spec is checked
+     * against the RFC 6376 grammar in place. Only the tag names are copied
+     * out of data, values are recorded as spans of it and copied when
+     * first read, so tags never read cost no copy.
      * 
      * @param data
      *                the string to be parsed
      */
     protected void parse(String data) {
-        for (int i = 0; i < data.length(); i++) {
-            int equal = data.indexOf('=', i);
+        int length = data.length();
+        int i = 0;
+        while (i < length) {
+            int equal = -1;
+            int next = i;
+            while (next < length && data.charAt(next) != ';') {
+                if (equal == -1 && data.charAt(next) == '=') {
+                    equal = next;
+                }
+                next++;
+            }
+
             if (equal == -1) {
+                if (next < length) {
+                    throw new IllegalStateException("Found ';' before '=' in "
+                            + data);
+                }
                 // TODO check whether this is correct or not
                 // this allow FWS/WSP after the final ";"
-                String rest = data.substring(i);
-                if (!rest.isEmpty()
-                        && trimFWS(rest, 0, rest.length() - 1, true).length() > 0) {
+                if (trimFWS(data, i, length - 1, true).length() > 0) {
                     throw new IllegalStateException(
                             "Unexpected termination at position " + i + ": "
-                                    + data + " | [" + rest + "]");
+                                    + data + " | [" + data.substring(i) + "]");
                 }
-                i = data.length();
-                continue;
-            }
-            // we could start from "equals" but we start from "i" in
-            // order to spot invalid values before validation.
-            int next = data.indexOf(';', i);
-            if (next == -1) {
-                next = data.length();
-            }
-
-            if (equal > next) {
-                throw new IllegalStateException("Found ';' before '=' in "
-                        + data);
+                break;
             }
 
-            CharSequence tag = trimFWS(data, i, equal - 1, true).toString();
-            if (VALIDATION && !tagPattern.matcher(tag).matches()) {
-                throw new IllegalStateException("Syntax error in tag: " + tag);
-            }
-            String tagString = tag.toString();
-            if (tagValues.containsKey(tagString)) {
+            String tag = token(data, i, equal - 1, true).toString();
+            if (tagValues.containsKey(tag)) {
                 throw new IllegalStateException(
                         "Syntax error (duplicate tag): " + tag);
             }
+            tagValues.put(tag, token(data, equal + 1, next - 1, false));
+            valueSpans.put(tag, new int[] { equal + 1, next });
+            i = next + 1;
+        }
+        this.stringRepresentation  = data;
+    }
 
-            CharSequence value = trimFWS(data, equal + 1, next - 1, true);
-            if (VALIDATION && !valuePattern.matcher(value).matches()) {
+    /**
+     * @return the tag-name or tag-value found in data[start, stop], without
+     * the surrounding FWS
+     */
+    private static Value token(String data, int start, int stop, boolean tag) {
+        start = skipLeadingFWS(data, start, stop);
+        stop = skipTrailingFWS(data, start, stop);
+        while (start <= stop && isWSP(data.charAt(start)))
+            start++;
+        while (start <= stop && isWSP(data.charAt(stop)))
+            stop--;
+        if (stop < start) {
+            stop = start - 1;
+        }
+        if (VALIDATION) {
+            if (tag && !isTagName(data, start, stop)) {
+                throw new IllegalStateException("Syntax error in tag: "
+                        + data.substring(start, stop + 1));
+            }
+            if (!tag && !isTagValue(data, start, stop)) {
                 throw new IllegalStateException("Syntax error in value: "
-                        + value);
+                        + data.substring(start, stop + 1));
             }
+        }
+        return new Value(data, start, stop + 1);
+    }
 
-            tagValues.put(tagString, value);
-            i = next;
+    // ALPHA *ALNUMPUNC
+    private static boolean isTagName(String data, int start, int stop) {
+        if (start > stop || !isAlpha(data.charAt(start))) {
+            return false;
         }
-        this.stringRepresentation  = data;
+        for (int k = start + 1; k <= stop; k++) {
+            char c = data.charAt(k);
+            if (!isAlpha(c) && !(c >= '0' && c <= '9') && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAlpha(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    // [ tval *( 1*(WSP / FWS) tval ) ], tval being any char but ';', WSP, CR
+    // and LF.
+    private static boolean isTagValue(String data, int start, int stop) {
+        if (start > stop) {
+            return true;
+        }
+        if (!isValChar(data.charAt(start)) || !isValChar(data.charAt(stop))) {
+            return false;
+        }
+        for (int k = start + 1; k < stop; k++) {
+            char c = data.charAt(k);
+            if (c == '\r') {
+                if (k + 2 >= stop || data.charAt(k + 1) != '\n' || !isWSP(data.charAt(k + 2))) {
+                    return false;
+                }
+                k += 2;
+            } else if (c == '\n' || c == ';') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValChar(char c) {
+        return c != ';' && c != ' ' && c != '\t' && c != '\r' && c != '\n';
     }
 
     public int hashCode() {
         final int prime = 31;
         int result = 1;
         result = prime * result
-                + ((tagValues == null) ? 0 : tagValues.hashCode());
+                + ((tagValues == null) ? 0 : values().hashCode());
         return result;
     }
 
@@ -205,7 +314,16 @@ public class TagValue {
         TagValue other = (TagValue) obj;
         if (tagValues == null) {
             return other.tagValues == null;
-        } else return tagValues.equals(other.tagValues);
+        } else return other.tagValues != null && values().equals(other.values());
+    }
+
+    // the values as strings, whether parsed or set.
+    private Map<String, String> values() {
+        Map<String, String> values = new HashMap<>();
+        for (Map.Entry<String, CharSequence> tagValue : tagValues.entrySet()) {
+            values.put(tagValue.getKey(), tagValue.getValue().toString());
+        }
+        return values;
     }
 
     public Set<String> getTags() {
@@ -217,11 +335,12 @@ public class TagValue {
         if (val == null)
             return getDefault(key);
         else
-            return val;
+            return val instanceof Value ? val.toString() : val;
     }
     
     protected void setValue(String tag, String value) {
         stringRepresentation = null;
+        valueSpans.clear();
         tagValues.put(tag, value);
     }
 
@@ -270,16 +389,40 @@ public class TagValue {
         }
         return stringRepresentation;
     }
+
+    /**
+     * The value of the tag and its surrounding whitespace are cut out of the
+     * string representation, using the offsets recorded when it was parsed
+     * or generated.
+     *
+     * @param tag the tag to empty
+     * @return the string representation with an empty value for tag, or the
+     * unchanged string representation when tag is not in it
+     */
+    protected String toStringWithEmptyValue(String tag) {
+        String data = toString();
+        int[] span = valueSpans.get(tag);
+        if (span == null) {
+            return data;
+        }
+        return new StringBuilder(data.length() - span[1] + span[0])
+                .append(data, 0, span[0])
+                .append(data, span[1], data.length())
+                .toString();
+    }
     
     private void updateStringRepresentation() {
         // calculate a new string representation
         StringBuilder res = new StringBuilder();
+        valueSpans.clear();
         Set<String> s = getTags();
         for (String tag : s) {
             res.append(" ");
             res.append(tag);
             res.append("=");
+            int start = res.length();
             res.append(getValue(tag));
+            valueSpans.put(tag, new int[] { start, res.length() });
             res.append(";");
         }
         // TODO add folding
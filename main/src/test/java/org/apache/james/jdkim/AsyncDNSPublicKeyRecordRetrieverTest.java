@@ -0,0 +1,148 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jdkim;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.james.jdkim.exceptions.PermFailException;
+import org.apache.james.jdkim.exceptions.TempFailException;
+import org.apache.james.jdkim.impl.AsyncDNSPublicKeyRecordRetriever;
+import org.junit.Test;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.SimpleResolver;
+import org.xbill.DNS.TXTRecord;
+
+public class AsyncDNSPublicKeyRecordRetrieverTest {
+
+    private static class StubResolver extends SimpleResolver {
+        private final Function<Message, CompletableFuture<Message>> answer;
+        private final AtomicInteger queries = new AtomicInteger();
+
+        StubResolver(Function<Message, CompletableFuture<Message>> answer) throws UnknownHostException {
+            super("127.0.0.1");
+            this.answer = answer;
+        }
+
+        @Override
+        public CompletionStage<Message> sendAsync(Message query) {
+            queries.incrementAndGet();
+            return answer.apply(query);
+        }
+
+        @Override
+        public CompletionStage<Message> sendAsync(Message query, Executor executor) {
+            return sendAsync(query);
+        }
+    }
+
+    private static Message response(Message query, int rcode, String... txt) {
+        Message response = new Message(query.getHeader().getID());
+        response.getHeader().setFlag(Flags.QR);
+        response.getHeader().setRcode(rcode);
+        response.addRecord(query.getQuestion(), Section.QUESTION);
+        for (String t : txt) {
+            response.addRecord(new TXTRecord(query.getQuestion().getName(), DClass.IN, 300, t), Section.ANSWER);
+        }
+        return response;
+    }
+
+    @Test
+    public void should_return_txt_records() throws Exception {
+        StubResolver resolver = new StubResolver(query ->
+                CompletableFuture.completedFuture(response(query, Rcode.NOERROR, "v=DKIM1; p=abc")));
+        List<String> records = new AsyncDNSPublicKeyRecordRetriever(resolver)
+                .getRecordsAsync("dns/txt", "s1", "example.com").get();
+
+        assertThat(records).containsExactly("v=DKIM1; p=abc");
+    }
+
+    @Test
+    public void should_return_empty_list_on_nxdomain() throws Exception {
+        StubResolver resolver = new StubResolver(query ->
+                CompletableFuture.completedFuture(response(query, Rcode.NXDOMAIN)));
+
+        assertThat(new AsyncDNSPublicKeyRecordRetriever(resolver)
+                .getRecords("dns/txt", "s1", "example.com")).isEmpty();
+    }
+
+    @Test
+    public void should_temp_fail_on_servfail() throws Exception {
+        StubResolver resolver = new StubResolver(query ->
+                CompletableFuture.completedFuture(response(query, Rcode.SERVFAIL)));
+
+        assertThatThrownBy(() -> new AsyncDNSPublicKeyRecordRetriever(resolver)
+                .getRecords("dns/txt", "s1", "example.com"))
+                .isInstanceOf(TempFailException.class)
+                .hasMessageContaining("SERVFAIL");
+    }
+
+    @Test
+    public void should_temp_fail_on_timeout() throws Exception {
+        StubResolver resolver = new StubResolver(query -> new CompletableFuture<>());
+
+        assertThatThrownBy(() -> new AsyncDNSPublicKeyRecordRetriever(resolver, Duration.ofMillis(50))
+                .getRecords("dns/txt", "s1", "example.com"))
+                .isInstanceOf(TempFailException.class);
+    }
+
+    @Test
+    public void should_perm_fail_on_unsupported_method() throws Exception {
+        StubResolver resolver = new StubResolver(query -> new CompletableFuture<>());
+
+        assertThatThrownBy(() -> new AsyncDNSPublicKeyRecordRetriever(resolver)
+                .getRecords("somethingelse", "s1", "example.com"))
+                .isInstanceOf(PermFailException.class);
+        assertThat(resolver.queries).hasValue(0);
+    }
+
+    @Test
+    public void should_coalesce_identical_in_flight_queries() throws Exception {
+        CompletableFuture<Message> pending = new CompletableFuture<>();
+        StubResolver resolver = new StubResolver(query -> pending.thenApply(ignored ->
+                response(query, Rcode.NOERROR, "v=DKIM1; p=abc")));
+        AsyncDNSPublicKeyRecordRetriever retriever = new AsyncDNSPublicKeyRecordRetriever(resolver);
+
+        CompletableFuture<List<String>> first = retriever.getRecordsAsync("dns/txt", "s1", "example.com");
+        CompletableFuture<List<String>> second = retriever.getRecordsAsync("dns/txt", "S1", "Example.com");
+        pending.complete(null);
+
+        assertThat(first.get()).containsExactly("v=DKIM1; p=abc");
+        assertThat(second.get()).containsExactly("v=DKIM1; p=abc");
+        assertThat(resolver.queries).hasValue(1);
+
+        retriever.getRecordsAsync("dns/txt", "s1", "example.com").get();
+        assertThat(resolver.queries).hasValue(2);
+    }
+}
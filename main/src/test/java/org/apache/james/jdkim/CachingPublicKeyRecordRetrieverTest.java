@@ -0,0 +1,239 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jdkim;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.james.jdkim.api.AsyncPublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.PublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.TimedRecords;
+import org.apache.james.jdkim.exceptions.PermFailException;
+import org.apache.james.jdkim.exceptions.TempFailException;
+import org.apache.james.jdkim.impl.CachingPublicKeyRecordRetriever;
+import org.junit.Test;
+
+public class CachingPublicKeyRecordRetrieverTest {
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private final MutableClock clock = new MutableClock();
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    private PublicKeyRecordRetriever answering(TimedRecords answer) {
+        return new PublicKeyRecordRetriever() {
+            public java.util.List<String> getRecords(CharSequence methodAndOption,
+                    CharSequence selector, CharSequence token) throws TempFailException, PermFailException {
+                return getTimedRecords(methodAndOption, selector, token).getRecords();
+            }
+
+            public TimedRecords getTimedRecords(CharSequence methodAndOption,
+                    CharSequence selector, CharSequence token) {
+                lookups.incrementAndGet();
+                return answer;
+            }
+        };
+    }
+
+    private CachingPublicKeyRecordRetriever cache(PublicKeyRecordRetriever retriever, int size) {
+        return new CachingPublicKeyRecordRetriever(retriever, size, Duration.ofHours(1),
+                Duration.ofMinutes(5), Duration.ofSeconds(30), clock);
+    }
+
+    @Test
+    public void should_honour_record_ttl() throws Exception {
+        CachingPublicKeyRecordRetriever retriever = cache(answering(
+                new TimedRecords(Collections.singletonList("p=key"), Duration.ofSeconds(60))), 10);
+
+        assertThat(retriever.getRecords("dns/txt", "s1", "example.com")).containsExactly("p=key");
+        clock.advance(Duration.ofSeconds(59));
+        assertThat(retriever.getRecords("dns/txt", "s1", "EXAMPLE.com")).containsExactly("p=key");
+        assertThat(lookups).hasValue(1);
+
+        clock.advance(Duration.ofSeconds(1));
+        retriever.getRecords("dns/txt", "s1", "example.com");
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    public void should_cap_ttl_to_max_ttl() throws Exception {
+        CachingPublicKeyRecordRetriever retriever = cache(answering(
+                new TimedRecords(Collections.singletonList("p=key"), Duration.ofDays(2))), 10);
+
+        TimedRecords first = retriever.getTimedRecords("dns/txt", "s1", "example.com");
+        assertThat(first.getTtl()).isEqualTo(Duration.ofHours(1));
+        clock.advance(Duration.ofHours(1));
+        retriever.getRecords("dns/txt", "s1", "example.com");
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    public void should_use_max_ttl_when_ttl_is_unknown() throws Exception {
+        CachingPublicKeyRecordRetriever retriever = cache((methodAndOption, selector, token) -> {
+            lookups.incrementAndGet();
+            return Collections.singletonList("p=key");
+        }, 10);
+
+        retriever.getRecords("dns/txt", "s1", "example.com");
+        clock.advance(Duration.ofMinutes(59));
+        retriever.getRecords("dns/txt", "s1", "example.com");
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    public void should_cache_empty_answers_for_negative_ttl() throws Exception {
+        CachingPublicKeyRecordRetriever retriever = cache(answering(
+                new TimedRecords(Collections.emptyList(), null)), 10);
+
+        assertThat(retriever.getRecords("dns/txt", "s1", "example.com")).isEmpty();
+        clock.advance(Duration.ofMinutes(4));
+        assertThat(retriever.getRecords("dns/txt", "s1", "example.com")).isEmpty();
+        assertThat(lookups).hasValue(1);
+        clock.advance(Duration.ofMinutes(1));
+        retriever.getRecords("dns/txt", "s1", "example.com");
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    public void should_cache_temporary_failures_for_temp_fail_ttl() throws Exception {
+        CachingPublicKeyRecordRetriever retriever = cache((methodAndOption, selector, token) -> {
+            lookups.incrementAndGet();
+            throw new TempFailException("timeout");
+        }, 10);
+
+        assertThatThrownBy(() -> retriever.getRecords("dns/txt", "s1", "example.com"))
+                .isInstanceOf(TempFailException.class);
+        clock.advance(Duration.ofSeconds(29));
+        assertThatThrownBy(() -> retriever.getRecords("dns/txt", "s1", "example.com"))
+                .isInstanceOf(TempFailException.class)
+                .hasMessage("timeout");
+        assertThat(lookups).hasValue(1);
+        clock.advance(Duration.ofSeconds(1));
+        assertThatThrownBy(() -> retriever.getRecords("dns/txt", "s1", "example.com"))
+                .isInstanceOf(TempFailException.class);
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    public void should_not_cache_permanent_failures() {
+        CachingPublicKeyRecordRetriever retriever = cache((methodAndOption, selector, token) -> {
+            lookups.incrementAndGet();
+            throw new PermFailException("unsupported");
+        }, 10);
+
+        assertThatThrownBy(() -> retriever.getRecords("dns/txt", "s1", "example.com"))
+                .isInstanceOf(PermFailException.class);
+        assertThatThrownBy(() -> retriever.getRecords("dns/txt", "s1", "example.com"))
+                .isInstanceOf(PermFailException.class);
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    public void should_evict_least_recently_used_entries() throws Exception {
+        CachingPublicKeyRecordRetriever retriever = cache((methodAndOption, selector, token) -> {
+            lookups.incrementAndGet();
+            return Collections.singletonList(selector.toString());
+        }, 2);
+
+        retriever.getRecords("dns/txt", "s1", "example.com");
+        retriever.getRecords("dns/txt", "s2", "example.com");
+        retriever.getRecords("dns/txt", "s1", "example.com");
+        retriever.getRecords("dns/txt", "s3", "example.com");
+        assertThat(retriever.size()).isEqualTo(2);
+        assertThat(lookups).hasValue(3);
+
+        retriever.getRecords("dns/txt", "s1", "example.com");
+        assertThat(lookups).hasValue(3);
+        retriever.getRecords("dns/txt", "s2", "example.com");
+        assertThat(lookups).hasValue(4);
+    }
+
+    @Test
+    public void should_share_the_cache_with_async_lookups() throws Exception {
+        AsyncPublicKeyRecordRetriever async = (methodAndOption, selector, token) -> {
+            lookups.incrementAndGet();
+            return CompletableFuture.completedFuture(Collections.singletonList("p=key"));
+        };
+        CachingPublicKeyRecordRetriever retriever = new CachingPublicKeyRecordRetriever(
+                answering(new TimedRecords(Collections.singletonList("p=key"), null)), async, 10,
+                Duration.ofHours(1), Duration.ofMinutes(5), Duration.ofSeconds(30), clock);
+
+        assertThat(retriever.getRecordsAsync("dns/txt", "s1", "example.com").get()).containsExactly("p=key");
+        assertThat(retriever.getRecordsAsync("dns/txt", "s1", "example.com").get()).containsExactly("p=key");
+        assertThat(retriever.getRecords("dns/txt", "s1", "example.com")).containsExactly("p=key");
+        assertThat(lookups).hasValue(1);
+        clock.advance(Duration.ofHours(1));
+        retriever.getRecordsAsync("dns/txt", "s1", "example.com").get();
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    public void should_cache_async_temporary_failures() {
+        AsyncPublicKeyRecordRetriever async = (methodAndOption, selector, token) -> {
+            lookups.incrementAndGet();
+            CompletableFuture<java.util.List<String>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new TempFailException("timeout"));
+            return failed;
+        };
+        CachingPublicKeyRecordRetriever retriever = new CachingPublicKeyRecordRetriever(
+                answering(null), async, 10,
+                Duration.ofHours(1), Duration.ofMinutes(5), Duration.ofSeconds(30), clock);
+
+        assertThatThrownBy(() -> retriever.getRecordsAsync("dns/txt", "s1", "example.com").join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(TempFailException.class);
+        assertThatThrownBy(() -> retriever.getRecordsAsync("dns/txt", "s1", "example.com").join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(TempFailException.class);
+        assertThatThrownBy(() -> retriever.getRecords("dns/txt", "s1", "example.com"))
+                .isInstanceOf(TempFailException.class)
+                .hasMessage("timeout");
+        assertThat(lookups).hasValue(1);
+    }
+}
@@ -0,0 +1,134 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.james.jdkim.exceptions.FailException;
+import org.apache.james.jdkim.impl.BodyHasherImpl;
+import org.apache.james.jdkim.impl.CompoundBodyHasher;
+import org.apache.james.jdkim.tagvalue.SignatureRecordImpl;
+import org.junit.Test;
+
+public class CompoundBodyHasherTest {
+
+    private static final byte[] BODY = ("Hello  \t world \r\n"
+            + "\r\n"
+            + "second\tline   \r\n"
+            + "\r\n\r\n").getBytes();
+
+    private static final String[] SIGNATURES = {
+            "v=1; a=rsa-sha256; c=relaxed/relaxed; d=example.com; s=a; h=from; bh=; b=;",
+            "v=1; a=rsa-sha256; c=relaxed/relaxed; d=example.org; s=b; h=from; bh=; b=;",
+            "v=1; a=rsa-sha1; c=relaxed/relaxed; d=example.com; s=c; h=from; bh=; b=;",
+            "v=1; a=rsa-sha256; c=relaxed/relaxed; d=example.com; s=d; h=from; l=10; bh=; b=;",
+            "v=1; a=rsa-sha256; c=simple/simple; d=example.com; s=e; h=from; bh=; b=;",
+            "v=1; a=rsa-sha256; c=simple/simple; d=example.com; s=f; h=from; l=3; bh=; b=;",
+            "v=1; a=rsa-sha1; c=simple/simple; d=example.com; s=g; h=from; bh=; b=;",
+    };
+
+    private static byte[] digest(BodyHasherImpl bhj) throws IOException {
+        OutputStream out = bhj.getOutputStream();
+        out.write(BODY);
+        out.close();
+        return bhj.getDigest();
+    }
+
+    @Test
+    public void shouldComputeTheSameDigestsAsSeparateJobs() throws Exception {
+        checkDigests(null);
+    }
+
+    @Test
+    public void shouldComputeTheSameDigestsInParallel() throws Exception {
+        checkDigests(ForkJoinPool.commonPool());
+    }
+
+    private void checkDigests(Executor executor) throws Exception {
+        Map<String, BodyHasherImpl> jobs = new LinkedHashMap<>();
+        for (String signature : SIGNATURES) {
+            jobs.put(signature, new BodyHasherImpl(new SignatureRecordImpl(signature)));
+        }
+        CompoundBodyHasher compound = new CompoundBodyHasher(jobs, new Hashtable<String, FailException>(), executor);
+        OutputStream out = compound.getOutputStream();
+        for (byte b : BODY) {
+            out.write(b);
+        }
+        out.close();
+
+        for (String signature : SIGNATURES) {
+            byte[] expected = digest(new BodyHasherImpl(new SignatureRecordImpl(signature)));
+            assertThat(jobs.get(signature).getDigest()).as(signature).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void shouldHashDirectBuffers() throws Exception {
+        checkBufferDigests(null);
+        checkBufferDigests(ForkJoinPool.commonPool());
+    }
+
+    private void checkBufferDigests(Executor executor) throws Exception {
+        Map<String, BodyHasherImpl> jobs = new LinkedHashMap<>();
+        for (String signature : SIGNATURES) {
+            jobs.put(signature, new BodyHasherImpl(new SignatureRecordImpl(signature)));
+        }
+        CompoundBodyHasher compound = new CompoundBodyHasher(jobs, new Hashtable<String, FailException>(), executor);
+        // split so that CRLFs and whitespace runs straddle the buffers.
+        for (int off = 0; off < BODY.length; off += 7) {
+            int len = Math.min(7, BODY.length - off);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(len);
+            buffer.put(BODY, off, len).flip();
+            compound.update(buffer);
+            assertThat(buffer.hasRemaining()).isFalse();
+        }
+        compound.getOutputStream().close();
+
+        for (String signature : SIGNATURES) {
+            byte[] expected = digest(new BodyHasherImpl(new SignatureRecordImpl(signature)));
+            assertThat(jobs.get(signature).getDigest()).as(signature).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void sharedDigestShouldBeReadableByEveryJob() throws Exception {
+        Map<String, BodyHasherImpl> jobs = new LinkedHashMap<>();
+        jobs.put("a", new BodyHasherImpl(new SignatureRecordImpl(SIGNATURES[0])));
+        jobs.put("b", new BodyHasherImpl(new SignatureRecordImpl(SIGNATURES[1])));
+        CompoundBodyHasher compound = new CompoundBodyHasher(jobs, new Hashtable<String, FailException>());
+        OutputStream out = compound.getOutputStream();
+        out.write(BODY);
+        out.close();
+
+        byte[] expected = digest(new BodyHasherImpl(new SignatureRecordImpl(SIGNATURES[0])));
+        assertThat(jobs.get("a").getDigest()).isEqualTo(expected);
+        assertThat(jobs.get("b").getDigest()).isEqualTo(expected);
+        assertThat(jobs.get("a").getDigest()).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,80 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Signature;
+import java.util.Collections;
+
+import org.apache.james.jdkim.impl.CryptoEngines;
+import org.junit.Test;
+
+public class CryptoEnginesTest {
+
+    @Test
+    public void releasedDigestShouldBeReusedInItsInitialState() throws Exception {
+        CryptoEngines engines = new CryptoEngines(Collections.<String, Provider>emptyMap());
+        MessageDigest md = engines.getMessageDigest("SHA-256");
+        md.update("garbage".getBytes(StandardCharsets.US_ASCII));
+        engines.releaseMessageDigest("SHA-256", md);
+
+        MessageDigest reused = engines.getMessageDigest("SHA-256");
+        assertThat(reused).isSameAs(md);
+        assertThat(reused.digest("abc".getBytes(StandardCharsets.US_ASCII)))
+                .isEqualTo(MessageDigest.getInstance("SHA-256").digest("abc".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void borrowedDigestsShouldBeDistinct() throws Exception {
+        CryptoEngines engines = new CryptoEngines(Collections.<String, Provider>emptyMap());
+        assertThat(engines.getMessageDigest("SHA-1")).isNotSameAs(engines.getMessageDigest("SHA-1"));
+    }
+
+    @Test
+    public void releasedSignatureShouldBeReused() throws Exception {
+        CryptoEngines engines = new CryptoEngines(Collections.<String, Provider>emptyMap());
+        Signature signature = engines.getSignature("SHA256withRSA");
+        engines.releaseSignature("SHA256withRSA", signature);
+        assertThat(engines.getSignature("SHA256withRSA")).isSameAs(signature);
+        assertThat(engines.getSignature("SHA256withRSA")).isNotSameAs(signature);
+    }
+
+    @Test
+    public void shouldUseTheConfiguredProvider() throws Exception {
+        Provider provider = MessageDigest.getInstance("SHA-256").getProvider();
+        CryptoEngines engines = new CryptoEngines(Collections.singletonMap("sha-256", provider));
+        assertThat(engines.getMessageDigest("SHA-256").getProvider()).isSameAs(provider);
+    }
+
+    @Test(expected = NoSuchAlgorithmException.class)
+    public void shouldRejectUnknownAlgorithms() throws Exception {
+        CryptoEngines.getDefault().getMessageDigest("NO-SUCH-DIGEST");
+    }
+
+    @Test
+    public void defaultShouldUseTheDefaultProviders() throws Exception {
+        assertThat(CryptoEngines.getDefault().getSignature("SHA1withRSA").getAlgorithm()).isEqualTo("SHA1withRSA");
+    }
+}
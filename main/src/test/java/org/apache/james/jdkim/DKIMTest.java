@@ -20,6 +20,7 @@
 package org.apache.james.jdkim;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.Assert.assertEquals;
 
 import java.io.ByteArrayInputStream;
@@ -32,15 +33,24 @@ import java.io.SequenceInputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.james.jdkim.MockPublicKeyRecordRetriever.Record;
+import org.apache.james.jdkim.api.AsyncPublicKeyRecordRetriever;
 import org.apache.james.jdkim.api.Headers;
 import org.apache.james.jdkim.api.Result;
 import org.apache.james.jdkim.api.SignatureRecord;
+import org.apache.james.jdkim.api.VerificationOutcome;
 import org.apache.james.jdkim.api.VerifierOptions;
+import org.apache.james.jdkim.exceptions.TempFailException;
 import org.apache.james.jdkim.impl.Message;
 import org.junit.Test;
 
@@ -147,6 +157,179 @@ public class DKIMTest {
     }
 
 
+    @Test
+    public void should_sign_many_messages_like_sign() throws Exception {
+        String expected = dkimSigner.sign(readFileToByteArrayInputStream("/org/apache/james/jdkim/Mail-DKIM/corpus/multiple_2.txt"));
+        List<InputStream> messages = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            messages.add(readFileToByteArrayInputStream("/org/apache/james/jdkim/Mail-DKIM/corpus/multiple_2.txt"));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<String> signatures = dkimSigner.signAll(messages, executor, 2);
+
+            assertThat(signatures).hasSize(10).containsOnly(expected);
+        } finally {
+            executor.shutdown();
+        }
+        // the parsed template is not altered by signing.
+        assertEquals(expected, dkimSigner.sign(readFileToByteArrayInputStream("/org/apache/james/jdkim/Mail-DKIM/corpus/multiple_2.txt")));
+    }
+
+    @Test
+    public void should_close_the_remaining_messages_when_signing_fails() throws Exception {
+        AtomicInteger closed = new AtomicInteger();
+        List<InputStream> messages = new ArrayList<>();
+        messages.add(new InputStream() {
+            public int read() throws IOException {
+                throw new IOException("unreadable");
+            }
+
+            public void close() {
+                closed.incrementAndGet();
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            messages.add(new ByteArrayInputStream(new byte[0]) {
+                public void close() {
+                    closed.incrementAndGet();
+                }
+            });
+        }
+
+        assertThatThrownBy(() -> dkimSigner.signAll(messages, Runnable::run, 1))
+                .isInstanceOf(IOException.class)
+                .hasMessage("unreadable");
+        assertEquals(4, closed.get());
+    }
+
+    @Test
+    public void should_verify_asynchronously_with_blocking_retriever() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            verifier.verify(signedWithThreeKeys());
+            List<Result> expected = new ArrayList<>(verifier.getResults());
+            verifier.resetResults();
+
+            List<Result> results = verifier.verifyAsync(signedWithThreeKeys(), executor).get();
+
+            assertThat(results)
+                    .filteredOn(Result::isSuccess)
+                    .hasSize(3);
+            assertThat(results)
+                    .filteredOn(it -> !it.isSuccess())
+                    .allSatisfy(it -> assertThat(it.getRecord().getSelector()).isNotIn("selector2", "selector3"));
+            assertThat(results).hasSameSizeAs(expected);
+            assertThat(verifier.getResults()).isEmpty();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void should_verify_asynchronously_with_async_retriever() throws Exception {
+        AsyncPublicKeyRecordRetriever asyncRetriever = (methodAndOption, selector, token) -> {
+            CompletableFuture<List<String>> future = new CompletableFuture<>();
+            try {
+                future.complete(keyRecordRetriever.getRecords(methodAndOption, selector, token));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        };
+        DKIMVerifier asyncVerifier = new DKIMVerifier(new VerifierOptions.Builder()
+                .withAsyncPublicKeyRecordRetriever(asyncRetriever)
+                .build());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Result> results = asyncVerifier.verifyAsync(signedWithThreeKeys(), executor).get();
+
+            assertThat(results)
+                    .filteredOn(Result::isSuccess)
+                    .hasSize(3);
+            assertThat(results)
+                    .filteredOn(it -> !it.isSuccess())
+                    .allSatisfy(it -> assertThat(it.getRecord().getSelector()).isNotIn("selector2", "selector3"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void should_report_async_lookup_failures_per_signature() throws Exception {
+        AsyncPublicKeyRecordRetriever asyncRetriever = (methodAndOption, selector, token) -> {
+            CompletableFuture<List<String>> future = new CompletableFuture<>();
+            if ("selector3".equals(selector.toString())) {
+                future.completeExceptionally(new TempFailException("timeout"));
+            } else {
+                try {
+                    future.complete(keyRecordRetriever.getRecords(methodAndOption, selector, token));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+            return future;
+        };
+        DKIMVerifier asyncVerifier = new DKIMVerifier(new VerifierOptions.Builder()
+                .withAsyncPublicKeyRecordRetriever(asyncRetriever)
+                .build());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<Result> results = asyncVerifier.verifyAsync(signedWithThreeKeys(), executor).get();
+
+            assertThat(results).filteredOn(Result::isSuccess).hasSize(2);
+            assertThat(results)
+                    .filteredOn(it -> it.getResultType() == Result.Type.TEMPERROR)
+                    .hasSize(1)
+                    .allSatisfy(it -> assertThat(it.getRecord().getSelector()).isEqualTo("selector3"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void should_share_one_verifier_among_threads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<VerificationOutcome>> outcomes = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                InputStream message = signedWithThreeKeys();
+                outcomes.add(executor.submit(() -> verifier.verifyMessage(message)));
+            }
+            for (Future<VerificationOutcome> outcome : outcomes) {
+                assertThat(outcome.get().hasAnyValidSignature()).isTrue();
+                assertThat(outcome.get().getVerifiedSignatures()).hasSize(3);
+                assertThat(outcome.get().getResults())
+                        .filteredOn(Result::isSuccess)
+                        .hasSize(3);
+            }
+            assertThat(verifier.getResults()).isEmpty();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void should_return_empty_outcome_for_unsigned_message() throws Exception {
+        VerificationOutcome outcome = verifier.verifyMessage(new ByteArrayInputStream(
+                "From: a@example.com\r\nSubject: test\r\n\r\nbody\r\n".getBytes(StandardCharsets.US_ASCII)));
+
+        assertThat(outcome.hasAnyValidSignature()).isFalse();
+        assertThat(outcome.getResults()).isEmpty();
+    }
+
+    private InputStream signedWithThreeKeys() throws Exception {
+        String signature1 = dkimSigner.sign(readFileToByteArrayInputStream("/org/apache/james/jdkim/Mail-DKIM/corpus/multiple_2.txt"));
+        String signature2 = new DKIMSigner(SIGNATURE_TEMPLATE_2, TestKeys.privateKey)
+                .sign(readFileToByteArrayInputStream("/org/apache/james/jdkim/Mail-DKIM/corpus/multiple_2.txt"));
+        String signature3 = new DKIMSigner(SIGNATURE_TEMPLATE_3, TestKeys.privateKey_2)
+                .sign(readFileToByteArrayInputStream("/org/apache/james/jdkim/Mail-DKIM/corpus/multiple_2.txt"));
+        String signatures = String.join("\r\n", Arrays.asList(signature1, signature2, signature3));
+        return new SequenceInputStream(
+                new ByteArrayInputStream((signatures + "\r\n").getBytes(StandardCharsets.UTF_8)),
+                readFileToByteArrayInputStream("/org/apache/james/jdkim/Mail-DKIM/corpus/multiple_2.txt"));
+    }
+
     private ByteArrayInputStream readFileToByteArrayInputStream(String fileName) throws URISyntaxException, IOException {
         URL resource = this.getClass().getResource(fileName);
         FileInputStream file = new FileInputStream(new File(resource.toURI()));
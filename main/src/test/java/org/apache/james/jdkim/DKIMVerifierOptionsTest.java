@@ -20,7 +20,9 @@
 package org.apache.james.jdkim;
 
 import org.apache.james.jdkim.api.PublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.VerificationPolicy;
 import org.apache.james.jdkim.api.VerifierOptions;
+import org.apache.james.jdkim.impl.CachingPublicKeyRecordRetriever;
 import org.apache.james.jdkim.impl.DNSPublicKeyRecordRetriever;
 import org.apache.james.jdkim.impl.MultiplexingPublicKeyRecordRetriever;
 import org.junit.Test;
@@ -31,9 +33,12 @@ import org.xbill.DNS.SimpleResolver;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class DKIMVerifierOptionsTest {
@@ -102,4 +107,46 @@ public class DKIMVerifierOptionsTest {
         assertEquals("Invalid instance", retr, opt.getPublicKeyRecordRetriever());
         assertTrue("Must be an instance of DNSPublicKeyRecordRetriever", opt.getPublicKeyRecordRetriever() instanceof DNSPublicKeyRecordRetriever);
     }
+
+    @Test
+    public void shouldWrapPublicKeyRecordRetrieverWhenLookupCacheIsConfigured() {
+        VerifierOptions opt = new VerifierOptions.Builder().withLookupCacheSize(100).build();
+        assertTrue("Must be an instance of CachingPublicKeyRecordRetriever", opt.getPublicKeyRecordRetriever() instanceof CachingPublicKeyRecordRetriever);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNegativeLookupCacheTtl() {
+        new VerifierOptions.Builder().withLookupCacheNegativeTtl(Duration.ofSeconds(-1)).build();
+    }
+
+    @Test
+    public void shouldNotHashBodiesInParallelByDefault() {
+        VerifierOptions opt = new VerifierOptions.Builder().build();
+        assertNull(opt.getBodyHashExecutor());
+    }
+
+    @Test
+    public void shouldUseCommonPoolForParallelBodyHashing() {
+        VerifierOptions opt = new VerifierOptions.Builder().withParallelBodyHashing(true).build();
+        assertEquals(ForkJoinPool.commonPool(), opt.getBodyHashExecutor());
+    }
+
+    @Test
+    public void shouldReturnBodyHashExecutor() {
+        Executor executor = Runnable::run;
+        VerifierOptions opt = new VerifierOptions.Builder().withParallelBodyHashing(true)
+                .withBodyHashExecutor(executor).build();
+        assertEquals(executor, opt.getBodyHashExecutor());
+    }
+
+    @Test
+    public void shouldCheckAllSignaturesByDefault() {
+        VerifierOptions opt = new VerifierOptions.Builder().build();
+        assertEquals(VerificationPolicy.ALL, opt.getVerificationPolicy());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNullVerificationPolicy() {
+        new VerifierOptions.Builder().withVerificationPolicy(null).build();
+    }
 }
@@ -0,0 +1,158 @@
+/******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one                 *
+ * or more contributor license agreements.  See the NOTICE file               *
+ * distributed with this work for additional information                      *
+ * regarding copyright ownership.  The ASF licenses this file                 *
+ * to you under the Apache License, Version 2.0 (the                          *
+ * "License"); you may not use this file except in compliance                 *
+ * with the License.  You may obtain a copy of the License at                 *
+ *                                                                            *
+ *   http://www.apache.org/licenses/LICENSE-2.0                               *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing,                 *
+ * software distributed under the License is distributed on an                *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY                     *
+ * KIND, either express or implied.  See the License for the                  *
+ * specific language governing permissions and limitations                    *
+ * under the License.                                                         *
+ ******************************************************************************/
+
+package org.apache.james.jdkim;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.james.jdkim.MockPublicKeyRecordRetriever.Record;
+import org.apache.james.jdkim.api.SignatureRecord;
+import org.apache.james.jdkim.api.VerifierOptions;
+import org.apache.james.jdkim.impl.CryptoEngines;
+import org.apache.james.jdkim.tagvalue.PublicKeyRecordImpl;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ed25519-sha256 signatures as defined by RFC 8463.
+ */
+public class Ed25519Test {
+
+    // RFC 8463 Appendix A
+    private static final String RFC_PUBLIC_KEY = "11qYAYKxCrfVS/7TyWQHOg7hcvPapiMlrwIaaPcHURo=";
+    private static final String UNSIGNED_MESSAGE = "From: Joe SixPack <joe@football.example.com>\r\n"
+            + "To: Suzie Q <suzie@shopping.example.net>\r\n"
+            + "Subject: Is dinner ready?\r\n"
+            + "Date: Fri, 11 Jul 2003 21:00:37 -0700 (PDT)\r\n"
+            + "Message-ID: <20030712040037.46341.5F8J@football.example.com>\r\n"
+            + "\r\n"
+            + "Hi.\r\n"
+            + "\r\n"
+            + "We lost the game.  Are you hungry yet?\r\n"
+            + "\r\n"
+            + "Joe.\r\n";
+    private static final String RFC_MESSAGE = "DKIM-Signature: v=1; a=ed25519-sha256; c=relaxed/relaxed;\r\n"
+            + " d=football.example.com; i=@football.example.com;\r\n"
+            + " q=dns/txt; s=brisbane; t=1528637909; h=from : to :\r\n"
+            + " subject : date : message-id : from : subject : date;\r\n"
+            + " bh=2jUSOH9NhtVGCQWNr9BrIAPreKQjO6Sn7XIkfJVOzv8=;\r\n"
+            + " b=/gCrinpcQOoIfuHNQIbq4pgh9kyIK3AQUdt9OdqQehSwhEIug4D11Bus\r\n"
+            + " Fa3bT3FY5OsU7ZbnKELq+eXdp1Q1Dw==\r\n"
+            + UNSIGNED_MESSAGE;
+
+    @Before
+    public void requireEd25519() {
+        // the JDK provides EdDSA since Java 15
+        try {
+            KeyPairGenerator.getInstance("Ed25519");
+        } catch (NoSuchAlgorithmException e) {
+            Assume.assumeNoException(e);
+        }
+    }
+
+    @Test
+    public void shouldVerifyTheRfc8463Example() throws Exception {
+        DKIMVerifier verifier = verifier(Record.of("brisbane", "football.example.com",
+                "v=DKIM1; k=ed25519; p=" + RFC_PUBLIC_KEY));
+
+        List<SignatureRecord> verified = verifier.verify(stream(RFC_MESSAGE));
+
+        assertThat(verified).hasSize(1);
+        assertThat(verified.get(0).getHashKeyType().toString()).isEqualTo("ed25519");
+    }
+
+    @Test
+    public void shouldVerifyGeneratedSignature() throws Exception {
+        KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        DKIMSigner signer = new DKIMSigner(
+                "v=1; a=ed25519-sha256; c=relaxed/relaxed; d=example.com; s=sel; h=from:to:subject:date;",
+                DKIMSigner.getPrivateKey(Base64.encodeBase64String(keyPair.getPrivate().getEncoded())));
+
+        String signature = signer.sign(stream(UNSIGNED_MESSAGE));
+        DKIMVerifier verifier = verifier(Record.of("sel", "example.com",
+                "k=ed25519; p=" + Base64.encodeBase64String(rawPublicKey(keyPair))));
+        List<SignatureRecord> verified = verifier.verify(new SequenceInputStream(
+                stream(signature + "\r\n"), stream(UNSIGNED_MESSAGE)));
+
+        assertThat(signature).contains("a=ed25519-sha256;");
+        assertThat(verified).hasSize(1);
+    }
+
+    @Test
+    public void shouldHashHeadersWithTheConfiguredEngines() throws Exception {
+        KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        List<String> requested = new ArrayList<>();
+        CryptoEngines engines = new CryptoEngines(Collections.emptyMap()) {
+            @Override
+            public MessageDigest getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+                requested.add(algorithm);
+                return super.getMessageDigest(algorithm);
+            }
+        };
+        DKIMSigner signer = new DKIMSigner(
+                "v=1; a=ed25519-sha256; c=relaxed/relaxed; d=example.com; s=sel; h=from:to:subject:date;",
+                DKIMSigner.getPrivateKey(Base64.encodeBase64String(keyPair.getPrivate().getEncoded())),
+                engines);
+
+        signer.sign(stream(UNSIGNED_MESSAGE));
+
+        // the body, then the headers signed by PureEdDSA
+        assertThat(requested).hasSize(2);
+    }
+
+    @Test
+    public void shouldRejectKeysOfTheWrongLength() {
+        PublicKeyRecordImpl record = new PublicKeyRecordImpl("k=ed25519; p="
+                + Base64.encodeBase64String(new byte[31]));
+
+        assertThatThrownBy(record::getPublicKey).isInstanceOf(IllegalStateException.class);
+    }
+
+    // RFC 8463 publishes the key itself, the JDK encodes it in a SubjectPublicKeyInfo
+    private static byte[] rawPublicKey(KeyPair keyPair) {
+        byte[] encoded = keyPair.getPublic().getEncoded();
+        return Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length);
+    }
+
+    private static DKIMVerifier verifier(Record record) {
+        return new DKIMVerifier(new VerifierOptions.Builder()
+                .withPublicKeyRecordRetriever(new MockPublicKeyRecordRetriever(record))
+                .build());
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -28,7 +28,6 @@ import org.apache.james.jdkim.exceptions.PermFailException;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.List;
@@ -51,7 +50,6 @@ public class FileBasedTest extends TestCase {
     }
 
     protected void runTest() throws Throwable {
-        InputStream is = new FileInputStream(file);
         // String msgoutFile = file.getAbsolutePath().substring(0,
         // file.getAbsolutePath().lastIndexOf('.')) + ".out";
 
@@ -209,9 +207,19 @@ public class FileBasedTest extends TestCase {
                 "sqli.com",
                 "k=rsa; p=MIGfMA0GCSqGSIb3DQEBAQUAA4GNADCBiQKBgQC1CTqmkuRWkxlHcv1peAz3c0RuXHthVO1xx1Hy4HryZUJwSJo/R3cnEwKorQvlRuDSMgXSLLxI8u6n7h6mzRmHdsS/A+pKc7nx/6WS4N6U57PSNqOclxfwa27m/EIL6KTk9KDhaKsXxquQUBkP1CQEUZHPhQ/t7s4dmU/kvGFgNQIDAQAB");
 
+        verify(pkr, verifier -> verifier.verify(new FileInputStream(file)));
+        verify(pkr, verifier -> verifier.verifyStreaming(new FileInputStream(file)));
+        verify(pkr, verifier -> verifier.verify(file.toPath()));
+    }
+
+    private interface Verification {
+        List<SignatureRecord> run(DKIMVerifier verifier) throws Exception;
+    }
+
+    private void verify(MockPublicKeyRecordRetriever pkr, Verification verification) throws Exception {
         try {
             DKIMVerifier verifier = new DKIMVerifier(new VerifierOptions.Builder().withPublicKeyRecordRetriever(pkr).build());
-            List<SignatureRecord> res = verifier.verify(is);
+            List<SignatureRecord> res = verification.run(verifier);
             assertEquals(1, verifier.getResults().size());
             if (getName().startsWith("NONE_"))
                 assertNull(res);
@@ -0,0 +1,60 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+
+import org.apache.james.jdkim.impl.IndexedHeaders;
+import org.junit.Test;
+
+public class IndexedHeadersTest {
+
+    private final IndexedHeaders headers = new IndexedHeaders(Arrays.asList(
+            "Received: from a\r\n\tby b",
+            "Subject : hello",
+            "DKIM-Signature: v=1;",
+            "subject: again"));
+
+    @Test
+    public void shouldKeepFieldsInOrder() {
+        assertThat(headers.getFields()).containsExactly(
+                "Received: from a\r\n\tby b",
+                "Subject : hello",
+                "DKIM-Signature: v=1;",
+                "subject: again");
+    }
+
+    @Test
+    public void shouldLookupFieldsIgnoringCase() {
+        assertThat(headers.getFields("SUBJECT")).containsExactly("Subject : hello", "subject: again");
+        assertThat(headers.getFields("dkim-signature")).containsExactly("DKIM-Signature: v=1;");
+        assertThat(headers.getFields("To")).isEmpty();
+    }
+
+    @Test
+    public void shouldReturnTheSameUnmodifiableList() {
+        assertThat(headers.getFields("subject")).isSameAs(headers.getFields("Subject"));
+        assertThatThrownBy(() -> headers.getFields("subject").clear())
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+}
@@ -0,0 +1,230 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.james.jdkim.api.SignatureRecord;
+import org.apache.james.jdkim.api.VerifierOptions;
+import org.apache.james.jdkim.canon.ByteBufferSink;
+import org.apache.james.jdkim.impl.BodyHasherImpl;
+import org.apache.james.jdkim.impl.MappedMessage;
+import org.apache.james.jdkim.impl.StreamingMessage;
+import org.apache.james.jdkim.tagvalue.SignatureRecordTemplate;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedMessageTest {
+
+    private static final String MESSAGE = "From sender Mon Sep 28 08:13:32 2009\n"
+            + "Received: from a\n"
+            + "\tby b\n"
+            + "Subject : hello\r\n"
+            + "From: a@example.com\r\n"
+            + "subject: again\n"
+            + "\n"
+            + "body line\n"
+            + "\r\n"
+            + "\r\r\n"
+            + "last line\r";
+
+    private static final String RAW_BODY = "body line\n"
+            + "\r\n"
+            + "\r\r\n"
+            + "last line\r";
+
+    private static class RecordingSink extends ByteArrayOutputStream implements ByteBufferSink {
+        private final List<Boolean> direct = new ArrayList<>();
+        private final boolean convertsLineEndings;
+
+        RecordingSink(boolean convertsLineEndings) {
+            this.convertsLineEndings = convertsLineEndings;
+        }
+
+        public boolean convertLineEndings() {
+            return convertsLineEndings;
+        }
+
+        public void write(ByteBuffer src) {
+            direct.add(src.isDirect());
+            while (src.hasRemaining()) {
+                write(src.get());
+            }
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(String message) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), message.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    private static String body(MappedMessage message) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        message.writeBody(bos);
+        return bos.toString("US-ASCII");
+    }
+
+    private static String read(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DKIMCommon.streamCopy(is, bos);
+        return bos.toString("US-ASCII");
+    }
+
+    @Test
+    public void shouldParseLikeStreamingMessage() throws Exception {
+        File file = write(MESSAGE);
+        MappedMessage message = new MappedMessage(file.toPath());
+        StreamingMessage streaming = new StreamingMessage(Files.newInputStream(file.toPath()));
+
+        assertThat(message.getFields()).isEqualTo(streaming.getFields());
+        assertThat(message.getFields("SUBJECT")).containsExactly("Subject : hello", "subject: again");
+        assertThat(body(message)).isEqualTo(read(streaming.getBodyInputStream()));
+        assertThat(body(message)).isEqualTo("body line\r\n\r\n\r\n\r\nlast line\r\n");
+    }
+
+    @Test
+    public void shouldParseMappedFilesLikeStreamingMessage() throws Exception {
+        File file = write(MESSAGE);
+        MappedMessage message = new MappedMessage(file.toPath(), 0);
+        StreamingMessage streaming = new StreamingMessage(Files.newInputStream(file.toPath()));
+
+        assertThat(message.getFields()).isEqualTo(streaming.getFields());
+        assertThat(body(message)).isEqualTo(read(streaming.getBodyInputStream()));
+    }
+
+    @Test
+    public void shouldWriteTheMappedBodyToSinksConvertingLineEndings() throws Exception {
+        File file = write(MESSAGE);
+        RecordingSink sink = new RecordingSink(true);
+
+        new MappedMessage(file.toPath(), 0).writeBody(sink);
+
+        assertThat(sink.toString("US-ASCII")).isEqualTo(RAW_BODY);
+        assertThat(sink.direct).containsExactly(true);
+    }
+
+    @Test
+    public void shouldReadSmallFiles() throws Exception {
+        File file = write(MESSAGE);
+        RecordingSink sink = new RecordingSink(true);
+
+        new MappedMessage(file.toPath()).writeBody(sink);
+
+        assertThat(sink.toString("US-ASCII")).isEqualTo(RAW_BODY);
+        assertThat(sink.direct).containsExactly(false);
+    }
+
+    @Test
+    public void shouldConvertLineEndingsForOtherSinks() throws Exception {
+        File file = write(MESSAGE);
+        RecordingSink sink = new RecordingSink(false);
+
+        new MappedMessage(file.toPath(), 0).writeBody(sink);
+
+        assertThat(sink.toString("US-ASCII")).isEqualTo("body line\r\n\r\n\r\n\r\nlast line\r\n");
+        assertThat(sink.direct).isEmpty();
+    }
+
+    @Test
+    public void shouldKeepTheFieldsOnceClosed() throws Exception {
+        MappedMessage message = new MappedMessage(write(MESSAGE).toPath(), 0);
+        message.close();
+        message.close();
+
+        assertThat(message.getFields("From")).containsExactly("From: a@example.com");
+        assertThatThrownBy(() -> message.writeBody(new ByteArrayOutputStream()))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void shouldHashMappedAndReadBodiesAlike() throws Exception {
+        File file = write(MESSAGE);
+        SignatureRecord template = new SignatureRecordTemplate(
+                "v=1; a=rsa-sha256; c=relaxed/relaxed; d=example.com; s=test; h=from; bh=; b=;");
+        BodyHasherImpl mapped = new BodyHasherImpl(template);
+        BodyHasherImpl read = new BodyHasherImpl(template);
+
+        BodyHasherImpl streamed = new BodyHasherImpl(template);
+
+        new MappedMessage(file.toPath(), 0).writeBody(mapped.getOutputStream());
+        new MappedMessage(file.toPath()).writeBody(read.getOutputStream());
+        DKIMCommon.streamCopy(new StreamingMessage(Files.newInputStream(file.toPath()))
+                .getBodyInputStream(), streamed.getOutputStream());
+
+        assertThat(mapped.getDigest()).isEqualTo(read.getDigest()).isEqualTo(streamed.getDigest());
+    }
+
+    @Test
+    public void shouldMatchStreamingMessageOnCorpus() throws Exception {
+        String resource = "/org/apache/james/jdkim/corpus/gamma_gmail.com.eml";
+        File file = new File(getClass().getResource(resource).toURI());
+        MappedMessage message = new MappedMessage(file.toPath());
+        StreamingMessage streaming = new StreamingMessage(getClass().getResourceAsStream(resource));
+
+        assertThat(message.getFields()).isEqualTo(streaming.getFields());
+        assertThat(body(message)).isEqualTo(read(streaming.getBodyInputStream()));
+    }
+
+    @Test
+    public void shouldAcceptMessagesWithoutBody() throws Exception {
+        MappedMessage message = new MappedMessage(write("From: a@example.com").toPath());
+
+        assertThat(message.getFields()).containsExactly("From: a@example.com");
+        assertThat(body(message)).isEmpty();
+    }
+
+    @Test
+    public void shouldSignAndVerifyFiles() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        KeyPair keyPair = generator.generateKeyPair();
+        DKIMSigner signer = new DKIMSigner("v=1; a=rsa-sha256; c=relaxed/relaxed; d=example.com; s=test; h=from:subject; bh=; b=;",
+                keyPair.getPrivate());
+        File file = write(MESSAGE);
+
+        String signature = signer.sign(file.toPath());
+        assertThat(signature).isEqualTo(signer.sign(Files.newInputStream(file.toPath())));
+
+        MockPublicKeyRecordRetriever pkr = new MockPublicKeyRecordRetriever();
+        pkr.addRecord("test", "example.com", "k=rsa; p=" + Base64.encodeBase64String(keyPair.getPublic().getEncoded()));
+        DKIMVerifier verifier = new DKIMVerifier(new VerifierOptions.Builder().withPublicKeyRecordRetriever(pkr).build());
+        List<SignatureRecord> records = verifier.verify(write(signature + "\r\n" + MESSAGE).toPath());
+        assertThat(records).hasSize(1);
+    }
+}
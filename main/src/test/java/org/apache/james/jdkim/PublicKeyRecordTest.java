@@ -20,6 +20,7 @@
 package org.apache.james.jdkim;
 
 import org.apache.james.jdkim.api.PublicKeyRecord;
+import org.apache.james.jdkim.impl.PublicKeyRecordCache;
 import org.apache.james.jdkim.tagvalue.PublicKeyRecordImpl;
 import org.junit.Assert;
 import static org.junit.Assert.assertEquals;
@@ -260,4 +261,58 @@ public class PublicKeyRecordTest {
         assertFalse(pkr.isDenySubdomains());
     }
 
+    @Test
+    public void testDecodedKeyAndPatternAreReused() {
+        PublicKeyRecord pkr = new PublicKeyRecordImpl(
+                "k=rsa; g=*; p=MIGfMA0GCSqGSIb3DQEBAQUAA4GNADCBiQKBgQDIhyR3oItOy22ZOaBrIVe9m/iME3RqOJeasANSpg2YTHTYV+Xtp4xwf5gTjCmHQEMOs0qYu0FYiNQPQogJ2t0Mfx9zNu06rfRBDjiIU9tpx2T+NGlWZ8qhbiLo5By8apJavLyqTLavyPSrvsx0B3YzC63T4Age2CDqZYA+OwSMWQIDAQAB");
+        pkr.validate();
+        Assert.assertSame(pkr.getPublicKey(), pkr.getPublicKey());
+        Assert.assertSame(pkr.getGranularityPattern(), pkr.getGranularityPattern());
+    }
+
+    @Test
+    public void testKeyDecodingFailureIsRemembered() {
+        int[] decodings = new int[1];
+        PublicKeyRecord pkr = new PublicKeyRecordImpl("k=rsa; p=YWJjZA==;") {
+            protected CharSequence getValue(String key) {
+                if ("p".equals(key)) {
+                    decodings[0]++;
+                }
+                return super.getValue(key);
+            }
+        };
+        pkr.validate();
+        decodings[0] = 0;
+        for (int i = 0; i < 2; i++) {
+            try {
+                pkr.getPublicKey();
+                fail("Expected failure: invalid key");
+            } catch (IllegalStateException e) {
+            }
+        }
+        assertEquals(1, decodings[0]);
+    }
+
+    @Test
+    public void testPublicKeyRecordCache() {
+        PublicKeyRecordCache cache = new PublicKeyRecordCache(1);
+        String record = "k=rsa; p=XXXXXXXX=;";
+        PublicKeyRecord pkr = cache.get(record, PublicKeyRecordImpl::new);
+        Assert.assertSame(pkr, cache.get(record, r -> {
+            throw new AssertionError("should not parse a cached record");
+        }));
+        try {
+            cache.get("v=DKIM2; p=XXXXXX=", r -> {
+                PublicKeyRecord invalid = new PublicKeyRecordImpl(r);
+                invalid.validate();
+                return invalid;
+            });
+            fail("Expected failure: wrong version");
+        } catch (IllegalStateException e) {
+        }
+        assertEquals(1, cache.size());
+        cache.get("k=rsa; p=YYYYYYYY=;", PublicKeyRecordImpl::new);
+        assertEquals(1, cache.size());
+        Assert.assertNotSame(pkr, cache.get(record, PublicKeyRecordImpl::new));
+    }
 }
@@ -22,6 +22,7 @@ package org.apache.james.jdkim;
 import org.apache.james.jdkim.api.SignatureRecord;
 import org.apache.james.jdkim.tagvalue.SignatureRecordImpl;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import org.junit.Test;
@@ -132,4 +133,33 @@ public class SignatureRecordImplTest {
         ).hasMessageContaining("expired");
     }
 
+    @Test
+    public void testParsedValuesFollowUpdates() {
+        SignatureRecord sr = new SignatureRecordImpl("v=1; a=rsa-sha256; c=relaxed; bh=AAAA; b=AAAA; h=from:to; s=select; d=example.com");
+        assertThat(sr.getHeaders()).isSameAs(sr.getHeaders());
+        assertThat(sr.getHeaderCanonicalisationMethod()).isEqualTo("relaxed");
+        assertThat(sr.getBodyCanonicalisationMethod()).isEqualTo("simple");
+
+        byte[] bodyHash = sr.getBodyHash();
+        bodyHash[0] = 1;
+        assertThat(sr.getBodyHash()).isEqualTo(new byte[3]);
+
+        sr.setBodyHash(new byte[] { 1, 2, 3 });
+        sr.setSignature(new byte[] { 4, 5, 6 });
+        assertThat(sr.getBodyHash()).isEqualTo(new byte[] { 1, 2, 3 });
+        assertThat(sr.getSignature()).isEqualTo(new byte[] { 4, 5, 6 });
+    }
+
+    @Test
+    public void testUnsignedStringOnlyEmptiesTheSignature() {
+        SignatureRecord sr = new SignatureRecordImpl("v=1; a=rsa-sha256; d=example.com; s=select; h=from;\r\n"
+                + "\tz=Subject:b=2; bh=AQID; b=\r\n\tBAUG ;");
+        assertThat(sr.toUnsignedString()).isEqualTo("v=1; a=rsa-sha256; d=example.com; s=select; h=from;\r\n"
+                + "\tz=Subject:b=2; bh=AQID; b=;");
+
+        sr.setSignature(new byte[] { 4, 5, 6 });
+        assertThat(sr.toString()).contains(" b=BAUG;");
+        assertThat(sr.toUnsignedString()).contains(" b=;").contains("z=Subject:b=2;");
+    }
+
 }
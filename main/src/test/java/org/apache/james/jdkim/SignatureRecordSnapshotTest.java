@@ -0,0 +1,83 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Optional;
+
+import org.apache.james.jdkim.api.HashMethod;
+import org.apache.james.jdkim.api.SignatureRecord;
+import org.apache.james.jdkim.api.SigningAlgorithm;
+import org.apache.james.jdkim.tagvalue.SignatureRecordSnapshot;
+import org.junit.Test;
+
+public class SignatureRecordSnapshotTest {
+
+    private static final String RECORD = "v=1; a=rsa-sha256; c=relaxed/simple; d=example.com; i=joe=20doe@example.com;\r\n"
+            + "        s=select; l=10; t=1234; h=from:to; bh=AQID; b=BAUG";
+
+    @Test
+    public void shouldDecodeEveryField() {
+        SignatureRecord sr = new SignatureRecordSnapshot(RECORD);
+
+        assertThat(sr.getSigningAlgorithm()).isEqualTo(Optional.of(SigningAlgorithm.RSA));
+        assertThat(sr.getHashingMethod()).isEqualTo(Optional.of(HashMethod.SHA256));
+        assertThat(sr.getHashAlgo().toString()).isEqualTo("sha-256");
+        assertThat(sr.getHeaderCanonicalisationMethod()).isEqualTo("relaxed");
+        assertThat(sr.getBodyCanonicalisationMethod()).isEqualTo("simple");
+        assertThat(sr.getIdentity().toString()).isEqualTo("joe doe@example.com");
+        assertThat(sr.getIdentityLocalPart().toString()).isEqualTo("joe doe");
+        assertThat(sr.getBodyHashLimit()).isEqualTo(10);
+        assertThat(sr.getSignatureTimestamp()).isEqualTo(1234L);
+        assertThat(sr.getBodyHash()).isEqualTo(new byte[] { 1, 2, 3 });
+        assertThat(sr.getSignature()).isEqualTo(new byte[] { 4, 5, 6 });
+        assertThat(sr.toString()).isEqualTo(RECORD);
+        assertThat(sr.toUnsignedString()).endsWith("b=");
+    }
+
+    @Test
+    public void shouldNotBeModified() {
+        SignatureRecord sr = new SignatureRecordSnapshot(RECORD);
+
+        sr.getBodyHash()[0] = 9;
+        assertThat(sr.getBodyHash()).isEqualTo(new byte[] { 1, 2, 3 });
+        assertThatThrownBy(() -> sr.getHeaders().add("cc"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> sr.setBodyHash(new byte[] { 1 }))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void shouldReportUnsupportedAlgorithms() {
+        SignatureRecord sr = new SignatureRecordSnapshot("v=1; a=dsa-md5; d=example.com; s=select; h=from; bh=AQID; b=BAUG");
+
+        assertThat(sr.getSigningAlgorithm()).isEqualTo(Optional.empty());
+        assertThat(sr.getHashingMethod()).isEqualTo(Optional.empty());
+    }
+
+    @Test
+    public void shouldRejectInvalidLimit() {
+        assertThatThrownBy(() -> new SignatureRecordSnapshot("v=1; a=rsa-sha256; d=example.com; s=select; l=ten; h=from; bh=AQID; b=BAUG"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("length limit");
+    }
+}
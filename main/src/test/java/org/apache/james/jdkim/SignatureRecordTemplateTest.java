@@ -159,4 +159,19 @@ public class SignatureRecordTemplateTest {
         assertThat(signatureRecord.getBodyHash()).isEqualTo(bodyHash);
         assertThat(signatureRecord.getSignature()).isEqualTo(signature);
     }
+
+    @Test
+    public void copyShouldNotShareChangesWithTheOriginal() {
+        SignatureRecordTemplate template = new SignatureRecordTemplate(
+                "v=1; a=rsa-sha256; c=relaxed/simple; d=example.com; s=sel; h=from:subject;");
+        SignatureRecordTemplate copy = new SignatureRecordTemplate(template);
+        assertThat(copy.toString()).isEqualTo(template.toString());
+
+        copy.setBodyHash("body".getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(copy.getBodyHash()).isEqualTo("body".getBytes(StandardCharsets.US_ASCII));
+        assertThat(template.getBodyHash()).isEmpty();
+        assertThat(copy.getHeaders()).isEqualTo(template.getHeaders());
+        assertThat(copy.getBodyCanonicalisationMethod()).isEqualTo(SignatureRecord.SIMPLE);
+    }
 }
@@ -0,0 +1,195 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jdkim;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.james.jdkim.api.AsyncPublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.PublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.VerifierOptions;
+import org.apache.james.jdkim.exceptions.TempFailException;
+import org.apache.james.jdkim.impl.CachingPublicKeyRecordRetriever;
+import org.apache.james.jdkim.impl.SingleFlightPublicKeyRecordRetriever;
+import org.junit.Test;
+
+public class SingleFlightPublicKeyRecordRetrieverTest {
+
+    private static final int FOLLOWERS = 5;
+
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private PublicKeyRecordRetriever blocking(boolean fail) {
+        return (methodAndOption, selector, token) -> {
+            lookups.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (fail) {
+                throw new TempFailException("timeout");
+            }
+            return Collections.singletonList("p=key");
+        };
+    }
+
+    private List<Object> runConcurrently(PublicKeyRecordRetriever retriever) throws Exception {
+        List<Object> outcomes = Collections.synchronizedList(new ArrayList<>());
+        Runnable lookup = () -> {
+            try {
+                outcomes.add(retriever.getRecords("dns/txt", "s1", "bulk.example"));
+            } catch (Exception e) {
+                outcomes.add(e);
+            }
+        };
+        Thread leader = new Thread(lookup);
+        leader.start();
+        entered.await();
+
+        List<Thread> followers = new ArrayList<>();
+        for (int i = 0; i < FOLLOWERS; i++) {
+            Thread follower = new Thread(lookup);
+            follower.start();
+            followers.add(follower);
+        }
+        for (Thread follower : followers) {
+            while (follower.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        }
+        release.countDown();
+
+        leader.join();
+        for (Thread follower : followers) {
+            follower.join();
+        }
+        return outcomes;
+    }
+
+    @Test
+    public void should_share_a_single_lookup() throws Exception {
+        List<Object> outcomes = runConcurrently(new SingleFlightPublicKeyRecordRetriever(blocking(false)));
+
+        assertThat(lookups).hasValue(1);
+        assertThat(outcomes)
+                .hasSize(FOLLOWERS + 1)
+                .allSatisfy(it -> assertThat(it).isEqualTo(Collections.singletonList("p=key")));
+    }
+
+    @Test
+    public void should_share_failures_with_distinct_exceptions() throws Exception {
+        List<Object> outcomes = runConcurrently(new SingleFlightPublicKeyRecordRetriever(blocking(true)));
+
+        assertThat(lookups).hasValue(1);
+        assertThat(outcomes)
+                .hasSize(FOLLOWERS + 1)
+                .allSatisfy(it -> assertThat(it).isInstanceOf(TempFailException.class))
+                .doesNotHaveDuplicates();
+    }
+
+    @Test
+    public void should_not_keep_completed_lookups() throws Exception {
+        SingleFlightPublicKeyRecordRetriever retriever = new SingleFlightPublicKeyRecordRetriever(
+                (methodAndOption, selector, token) -> {
+                    lookups.incrementAndGet();
+                    return Collections.singletonList("p=key");
+                });
+
+        retriever.getRecords("dns/txt", "s1", "bulk.example");
+        retriever.getRecords("dns/txt", "s1", "bulk.example");
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    public void should_share_a_single_async_lookup() throws Exception {
+        CompletableFuture<List<String>> answer = new CompletableFuture<>();
+        AsyncPublicKeyRecordRetriever async = (methodAndOption, selector, token) -> {
+            lookups.incrementAndGet();
+            return answer;
+        };
+        SingleFlightPublicKeyRecordRetriever retriever = new SingleFlightPublicKeyRecordRetriever(blocking(false), async);
+
+        CompletableFuture<List<String>> first = retriever.getRecordsAsync("dns/txt", "s1", "bulk.example");
+        CompletableFuture<List<String>> second = retriever.getRecordsAsync("dns/txt", "S1", "Bulk.Example");
+        assertThat(first).isNotDone();
+        answer.complete(Collections.singletonList("p=key"));
+
+        assertThat(first.get()).containsExactly("p=key");
+        assertThat(second.get()).containsExactly("p=key");
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    public void should_share_async_failures_with_distinct_exceptions() {
+        CompletableFuture<List<String>> answer = new CompletableFuture<>();
+        SingleFlightPublicKeyRecordRetriever retriever = new SingleFlightPublicKeyRecordRetriever(blocking(false),
+                (methodAndOption, selector, token) -> answer);
+
+        CompletableFuture<List<String>> first = retriever.getRecordsAsync("dns/txt", "s1", "bulk.example");
+        CompletableFuture<List<String>> second = retriever.getRecordsAsync("dns/txt", "s1", "bulk.example");
+        answer.completeExceptionally(new TempFailException("timeout"));
+
+        List<Object> failures = new ArrayList<>();
+        for (CompletableFuture<List<String>> lookup : Arrays.asList(first, second)) {
+            try {
+                lookup.join();
+            } catch (CompletionException e) {
+                failures.add(e.getCause());
+            }
+        }
+        assertThat(failures)
+                .hasSize(2)
+                .allSatisfy(it -> assertThat(it).isInstanceOf(TempFailException.class))
+                .doesNotHaveDuplicates();
+    }
+
+    @Test
+    public void should_be_enabled_by_verifier_options() {
+        VerifierOptions options = new VerifierOptions.Builder().withLookupCoalescing(true).build();
+        assertThat(options.getPublicKeyRecordRetriever()).isInstanceOf(SingleFlightPublicKeyRecordRetriever.class);
+
+        options = new VerifierOptions.Builder().withLookupCoalescing(true).withLookupCacheSize(10).build();
+        assertThat(options.getPublicKeyRecordRetriever()).isInstanceOf(CachingPublicKeyRecordRetriever.class);
+        assertThat(options.getAsyncPublicKeyRecordRetriever()).isNull();
+
+        AsyncPublicKeyRecordRetriever async = (methodAndOption, selector, token) ->
+                CompletableFuture.completedFuture(Collections.emptyList());
+        options = new VerifierOptions.Builder().withAsyncPublicKeyRecordRetriever(async)
+                .withLookupCoalescing(true).build();
+        assertThat(options.getAsyncPublicKeyRecordRetriever()).isInstanceOf(SingleFlightPublicKeyRecordRetriever.class);
+
+        options = new VerifierOptions.Builder().withAsyncPublicKeyRecordRetriever(async)
+                .withLookupCoalescing(true).withLookupCacheSize(10).build();
+        assertThat(options.getAsyncPublicKeyRecordRetriever()).isSameAs(options.getPublicKeyRecordRetriever());
+    }
+}
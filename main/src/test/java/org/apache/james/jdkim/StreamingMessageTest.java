@@ -0,0 +1,117 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.james.jdkim.impl.Message;
+import org.apache.james.jdkim.impl.StreamingMessage;
+import org.junit.Test;
+
+public class StreamingMessageTest {
+
+    private static final String MESSAGE = "From sender Mon Sep 28 08:13:32 2009\n"
+            + "Received: from a\n"
+            + "\tby b\n"
+            + "Subject : hello\r\n"
+            + "DKIM-Signature: v=1; a=rsa-sha256;\r\n"
+            + "  d=example.com\r\n"
+            + "subject: again\n"
+            + "\n"
+            + "body line\n"
+            + "\r\n"
+            + "last line\r";
+
+    private static StreamingMessage parse(String message) throws IOException {
+        return new StreamingMessage(new ByteArrayInputStream(message.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static String read(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DKIMCommon.streamCopy(is, bos);
+        return bos.toString("US-ASCII");
+    }
+
+    @Test
+    public void shouldReturnRawFieldsWithCRLFFolding() throws Exception {
+        StreamingMessage message = parse(MESSAGE);
+
+        assertThat(message.getFields()).containsExactly(
+                "Received: from a\r\n\tby b",
+                "Subject : hello",
+                "DKIM-Signature: v=1; a=rsa-sha256;\r\n  d=example.com",
+                "subject: again");
+    }
+
+    @Test
+    public void shouldLookupFieldsIgnoringCase() throws Exception {
+        StreamingMessage message = parse(MESSAGE);
+
+        assertThat(message.getFields("SUBJECT")).containsExactly("Subject : hello", "subject: again");
+        assertThat(message.getFields("dkim-signature")).hasSize(1);
+        assertThat(message.getFields("To")).isEmpty();
+    }
+
+    @Test
+    public void shouldConvertBodyLineEndings() throws Exception {
+        StreamingMessage message = parse(MESSAGE);
+
+        assertThat(read(message.getBodyInputStream())).isEqualTo("body line\r\n\r\nlast line\r\n");
+    }
+
+    @Test
+    public void shouldMatchMessageFieldsAndBody() throws Exception {
+        String resource = "/org/apache/james/jdkim/corpus/gamma_gmail.com.eml";
+        Message message = new Message(getClass().getResourceAsStream(resource));
+        try {
+            StreamingMessage streaming = new StreamingMessage(getClass().getResourceAsStream(resource));
+            assertThat(streaming.getFields()).isEqualTo(message.getFields());
+            assertThat(read(streaming.getBodyInputStream())).isEqualTo(read(message.getBodyInputStream()));
+        } finally {
+            message.dispose();
+        }
+    }
+
+    @Test
+    public void shouldAcceptMessagesWithoutBody() throws Exception {
+        StreamingMessage message = parse("From: a@example.com");
+
+        assertThat(message.getFields()).containsExactly("From: a@example.com");
+        assertThat(read(message.getBodyInputStream())).isEmpty();
+    }
+
+    @Test
+    public void shouldRejectTooLongLines() {
+        StringBuilder subject = new StringBuilder("Subject: ");
+        for (int i = 0; i < 10000; i++) {
+            subject.append('x');
+        }
+
+        assertThatThrownBy(() -> parse(subject + "\r\n\r\nbody"))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,105 @@
+/******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one                 *
+ * or more contributor license agreements.  See the NOTICE file               *
+ * distributed with this work for additional information                      *
+ * regarding copyright ownership.  The ASF licenses this file                 *
+ * to you under the Apache License, Version 2.0 (the                          *
+ * "License"); you may not use this file except in compliance                 *
+ * with the License.  You may obtain a copy of the License at                 *
+ *                                                                            *
+ *   http://www.apache.org/licenses/LICENSE-2.0                               *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing,                 *
+ * software distributed under the License is distributed on an                *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY                     *
+ * KIND, either express or implied.  See the License for the                  *
+ * specific language governing permissions and limitations                    *
+ * under the License.                                                         *
+ ******************************************************************************/
+
+package org.apache.james.jdkim;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.james.jdkim.api.PublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.Result;
+import org.apache.james.jdkim.api.VerificationOutcome;
+import org.apache.james.jdkim.api.VerifierOptions;
+import org.junit.Test;
+
+/**
+ * Signatures which cannot be verified must be rejected without looking up
+ * their key.
+ */
+public class UnverifiableSignatureTest {
+
+    private static final String HEADERS = "Date: Wed, 15 Feb 2006 17:32:54 -0500\r\n"
+            + "From: Jason Long <jlong@messiah.edu>\r\n"
+            + "Subject: unverifiable\r\n";
+    private static final String BODY = "\r\nThe quick brown fox jumped over the lazy dog.\r\n";
+
+    private final List<String> lookups = new ArrayList<>();
+    private final MockPublicKeyRecordRetriever records = new MockPublicKeyRecordRetriever(
+            "k=rsa; p=" + Base64.encodeBase64String(TestKeys.publicKey.getEncoded()) + ";",
+            "selector2", "messiah.edu");
+    private final PublicKeyRecordRetriever retriever = (methodAndOptions, selector, token) -> {
+        lookups.add(selector + "._domainkey." + token);
+        return records.getRecords(methodAndOptions, selector, token);
+    };
+    private final DKIMVerifier verifier = new DKIMVerifier(new VerifierOptions.Builder()
+            .withPublicKeyRecordRetriever(retriever)
+            .build());
+
+    @Test
+    public void validSignatureShouldBeLookedUp() throws Exception {
+        VerificationOutcome outcome = verify(signature(), HEADERS);
+
+        assertThat(outcome.hasAnyValidSignature()).isTrue();
+        assertThat(lookups).containsExactly("selector2._domainkey.messiah.edu");
+    }
+
+    @Test
+    public void unsupportedCanonicalizationShouldNotBeLookedUp() throws Exception {
+        assertRejected(verify(signature().replace("c=simple;", "c=simple/foobar;"), HEADERS));
+    }
+
+    @Test
+    public void unsupportedAlgorithmShouldNotBeLookedUp() throws Exception {
+        assertRejected(verify(signature().replace("a=rsa-sha256;", "a=rsa-md5;"), HEADERS));
+    }
+
+    @Test
+    public void invalidBodyLengthLimitShouldNotBeLookedUp() throws Exception {
+        assertRejected(verify(signature().replace("c=simple;", "c=simple; l=99999999999;"), HEADERS));
+    }
+
+    @Test
+    public void bodyHashOfTheWrongLengthShouldNotBeLookedUp() throws Exception {
+        assertRejected(verify(signature().replaceFirst("bh=[^;]*;", "bh=AAAA;"), HEADERS));
+    }
+
+    private void assertRejected(VerificationOutcome outcome) {
+        assertThat(outcome.getResults()).hasSize(1).noneMatch(Result::isSuccess);
+        assertThat(lookups).isEmpty();
+    }
+
+    private static String signature() throws Exception {
+        return new DKIMSigner("v=1; a=rsa-sha256; c=simple; d=messiah.edu; h=date:from:subject; s=selector2;",
+                TestKeys.privateKey).sign(stream(HEADERS + BODY));
+    }
+
+    private VerificationOutcome verify(String signature, String headers) throws Exception {
+        return verifier.verifyMessage(stream(signature + "\r\n" + headers + BODY));
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,228 @@
+/******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one                 *
+ * or more contributor license agreements.  See the NOTICE file               *
+ * distributed with this work for additional information                      *
+ * regarding copyright ownership.  The ASF licenses this file                 *
+ * to you under the Apache License, Version 2.0 (the                          *
+ * "License"); you may not use this file except in compliance                 *
+ * with the License.  You may obtain a copy of the License at                 *
+ *                                                                            *
+ *   http://www.apache.org/licenses/LICENSE-2.0                               *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing,                 *
+ * software distributed under the License is distributed on an                *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY                     *
+ * KIND, either express or implied.  See the License for the                  *
+ * specific language governing permissions and limitations                    *
+ * under the License.                                                         *
+ ******************************************************************************/
+
+package org.apache.james.jdkim;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.james.jdkim.MockPublicKeyRecordRetriever.Record;
+import org.apache.james.jdkim.api.AsyncPublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.PublicKeyRecordRetriever;
+import org.apache.james.jdkim.api.Result;
+import org.apache.james.jdkim.api.VerificationOutcome;
+import org.apache.james.jdkim.api.VerificationPolicy;
+import org.apache.james.jdkim.api.VerifierOptions;
+import org.junit.Test;
+
+public class VerificationPolicyTest {
+
+    private static final String HEADERS = "Date: Wed, 15 Feb 2006 17:32:54 -0500\r\n"
+            + "From: Jason Long <jlong@messiah.edu>\r\n"
+            + "Subject: verification policy\r\n"
+            + "\r\n";
+    private static final String MESSAGE = HEADERS + "The quick brown fox jumped over the lazy dog.\r\n";
+
+    private final List<String> lookups = new ArrayList<>();
+    private final PublicKeyRecordRetriever retriever = countingRetriever(new MockPublicKeyRecordRetriever(
+            Record.of("selector2", "messiah.edu",
+                    "k=rsa; p=" + Base64.encodeBase64String(TestKeys.publicKey.getEncoded()) + ";"),
+            Record.of("selector3", "messiah.edu",
+                    "k=rsa; p=" + Base64.encodeBase64String(TestKeys.publicKey_2.getEncoded()) + ";"),
+            Record.of("selector2", "other.example",
+                    "k=rsa; p=" + Base64.encodeBase64String(TestKeys.publicKey.getEncoded()) + ";")));
+
+    @Test
+    public void allShouldCheckEverySignature() throws Exception {
+        String message = signed(MESSAGE,
+                sign("messiah.edu", "selector2", TestKeys.privateKey, MESSAGE),
+                sign("messiah.edu", "selector3", TestKeys.privateKey_2, MESSAGE));
+
+        VerificationOutcome outcome = verifier(VerificationPolicy.ALL).verifyMessage(stream(message));
+
+        assertThat(outcome.getVerifiedSignatures()).hasSize(2);
+        assertThat(lookups).hasSize(2);
+    }
+
+    @Test
+    public void firstPassShouldStopAfterTheFirstValidSignature() throws Exception {
+        String message = signed(MESSAGE,
+                sign("messiah.edu", "selector2", TestKeys.privateKey, MESSAGE),
+                sign("messiah.edu", "selector3", TestKeys.privateKey_2, MESSAGE));
+
+        VerificationOutcome outcome = verifier(VerificationPolicy.FIRST_PASS).verifyMessage(stream(message));
+
+        assertThat(outcome.getVerifiedSignatures()).extracting(s -> s.getSelector().toString())
+                .containsExactly("selector2");
+        assertThat(outcome.getResults()).extracting(Result::getResultType)
+                .containsExactly(Result.Type.PASS, Result.Type.NONE);
+        assertThat(lookups).containsExactly("selector2._domainkey.messiah.edu");
+    }
+
+    @Test
+    public void firstPassShouldCheckTheNextSignatureWhenTheBodyDoesNotMatch() throws Exception {
+        // the headers signature is valid, the body hash is not.
+        String otherBody = sign("messiah.edu", "selector2", TestKeys.privateKey, HEADERS + "Another body.\r\n");
+        String message = signed(MESSAGE,
+                otherBody,
+                sign("messiah.edu", "selector3", TestKeys.privateKey_2, MESSAGE));
+
+        VerificationOutcome outcome = verifier(VerificationPolicy.FIRST_PASS).verifyMessage(stream(message));
+
+        assertThat(outcome.getVerifiedSignatures()).extracting(s -> s.getSelector().toString())
+                .containsExactly("selector3");
+        assertThat(outcome.getResults()).extracting(Result::getResultType)
+                .containsExactlyInAnyOrder(Result.Type.PASS, Result.Type.FAIL);
+        assertThat(lookups).containsExactly("selector2._domainkey.messiah.edu",
+                "selector3._domainkey.messiah.edu");
+    }
+
+    @Test
+    public void preferredDomainFirstShouldCheckTheFromDomainFirst() throws Exception {
+        String message = signed(MESSAGE,
+                sign("other.example", "selector2", TestKeys.privateKey, MESSAGE),
+                sign("messiah.edu", "selector2", TestKeys.privateKey, MESSAGE));
+
+        VerificationOutcome outcome = verifier(VerificationPolicy.PREFERRED_DOMAIN_FIRST)
+                .verifyMessage(stream(message));
+
+        assertThat(outcome.getVerifiedSignatures()).extracting(s -> s.getDToken().toString())
+                .containsExactly("messiah.edu");
+        assertThat(lookups).containsExactly("selector2._domainkey.messiah.edu");
+    }
+
+    @Test
+    public void signaturesNotEvaluatedShouldBeReported() throws Exception {
+        String message = signed(MESSAGE,
+                sign("other.example", "selector2", TestKeys.privateKey, MESSAGE),
+                sign("messiah.edu", "selector2", TestKeys.privateKey, MESSAGE));
+
+        VerificationOutcome outcome = verifier(VerificationPolicy.PREFERRED_DOMAIN_FIRST)
+                .verifyMessage(stream(message));
+
+        assertThat(outcome.getResults()).hasSize(2);
+        Result notEvaluated = outcome.getResults().get(1);
+        assertThat(notEvaluated.getResultType()).isEqualTo(Result.Type.NONE);
+        assertThat(notEvaluated.isSuccess()).isFalse();
+        assertThat(notEvaluated.getRecord().getDToken().toString()).isEqualTo("other.example");
+        assertThat(notEvaluated.getDkimRawField()).startsWith("DKIM-Signature:");
+        assertThat(notEvaluated.getHeaderTextWithReason())
+                .startsWith("dkim=none header.d=other.example header.s=selector2")
+                .endsWith("reason=\"not evaluated, another signature is valid\"");
+    }
+
+    @Test
+    public void firstPassShouldFailWhenNoSignatureIsValid() throws Exception {
+        String message = signed(MESSAGE,
+                sign("messiah.edu", "selector2", TestKeys.privateKey_2, MESSAGE),
+                sign("messiah.edu", "selector3", TestKeys.privateKey, MESSAGE));
+
+        VerificationOutcome outcome = verifier(VerificationPolicy.FIRST_PASS).verifyMessage(stream(message));
+
+        assertThat(outcome.hasAnyValidSignature()).isFalse();
+        assertThat(outcome.getResults()).hasSize(2).noneMatch(Result::isSuccess);
+    }
+
+    @Test
+    public void asyncVerificationShouldFollowThePolicy() throws Exception {
+        String message = signed(MESSAGE,
+                sign("other.example", "selector2", TestKeys.privateKey, MESSAGE),
+                sign("messiah.edu", "selector2", TestKeys.privateKey, MESSAGE));
+        AsyncPublicKeyRecordRetriever async = (methodAndOption, selector, token) -> {
+            CompletableFuture<List<String>> future = new CompletableFuture<>();
+            try {
+                future.complete(retriever.getRecords(methodAndOption, selector, token));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        };
+        DKIMVerifier verifier = new DKIMVerifier(new VerifierOptions.Builder()
+                .withPublicKeyRecordRetriever(retriever)
+                .withAsyncPublicKeyRecordRetriever(async)
+                .withVerificationPolicy(VerificationPolicy.PREFERRED_DOMAIN_FIRST)
+                .build());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<Result> results = verifier.verifyAsync(stream(message), executor).get();
+
+            assertThat(results).extracting(Result::getResultType)
+                    .containsExactly(Result.Type.PASS, Result.Type.NONE);
+            assertThat(results.get(0).getRecord().getDToken().toString()).isEqualTo("messiah.edu");
+            assertThat(lookups).containsExactly("selector2._domainkey.messiah.edu");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void asyncVerificationShouldCheckTheNextSignatureWhenOneFails() throws Exception {
+        String message = signed(MESSAGE,
+                sign("messiah.edu", "selector2", TestKeys.privateKey_2, MESSAGE),
+                sign("messiah.edu", "selector3", TestKeys.privateKey_2, MESSAGE));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<Result> results = verifier(VerificationPolicy.FIRST_PASS).verifyAsync(stream(message), executor).get();
+
+            assertThat(results).extracting(Result::getResultType)
+                    .containsExactlyInAnyOrder(Result.Type.FAIL, Result.Type.PASS);
+            assertThat(lookups).containsExactly("selector2._domainkey.messiah.edu",
+                    "selector3._domainkey.messiah.edu");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private DKIMVerifier verifier(VerificationPolicy policy) {
+        return new DKIMVerifier(new VerifierOptions.Builder()
+                .withPublicKeyRecordRetriever(retriever)
+                .withVerificationPolicy(policy)
+                .build());
+    }
+
+    private PublicKeyRecordRetriever countingRetriever(PublicKeyRecordRetriever delegate) {
+        return (methodAndOptions, selector, token) -> {
+            lookups.add(selector + "._domainkey." + token);
+            return delegate.getRecords(methodAndOptions, selector, token);
+        };
+    }
+
+    private static String sign(String domain, String selector, PrivateKey key, String message) throws Exception {
+        return new DKIMSigner("v=1; a=rsa-sha256; c=simple; d=" + domain + "; h=date:from:subject; q=dns/txt; s="
+                + selector + ";", key).sign(stream(message));
+    }
+
+    private static String signed(String message, String... signatures) {
+        return String.join("\r\n", signatures) + "\r\n" + message;
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
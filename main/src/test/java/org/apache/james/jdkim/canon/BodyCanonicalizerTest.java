@@ -0,0 +1,183 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.canon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class BodyCanonicalizerTest extends AbstractOutputStreamTestCase {
+
+    private static class Collecting extends BodyCanonicalizer {
+        private final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        private int outputs;
+
+        Collecting(boolean relaxed, long limit) {
+            super(relaxed, limit);
+        }
+
+        protected void output(byte[] b, int off, int len) {
+            bos.write(b, off, len);
+            outputs++;
+        }
+    }
+
+    public void testLimitAppliesToCanonicalizedBytes() throws IOException {
+        Collecting c = new Collecting(true, 8);
+        chunker("a  b\r\n\r\nc d\r\n".getBytes(), c);
+        assertEquals("a b\r\n\r\nc", c.bos.toString());
+    }
+
+    public void testLimitCoversTheEndingCRLF() throws IOException {
+        Collecting c = new Collecting(false, 4);
+        chunker("ab".getBytes(), c);
+        assertEquals("ab\r\n", c.bos.toString());
+    }
+
+    public void testZeroLimit() throws IOException {
+        Collecting c = new Collecting(false, 0);
+        chunker("ab\r\n".getBytes(), c);
+        assertEquals("", c.bos.toString());
+    }
+
+    public void testEmptyBody() throws IOException {
+        Collecting c = new Collecting(true, -1);
+        c.close();
+        assertEquals("\r\n", c.bos.toString());
+    }
+
+    public void testStagesOutput() throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 70; i++) {
+            line.append('x');
+        }
+        line.append("\r\n");
+        byte[] data = line.toString().getBytes();
+        Collecting c = new Collecting(true, -1);
+        for (int i = 0; i < 1000; i++) {
+            c.write(data, 0, data.length);
+        }
+        c.close();
+        assertEquals(72000, c.bos.size());
+        // 1000 lines handed over in a handful of chunks.
+        assertTrue(c.outputs < 20);
+    }
+
+    public void testCloseTwice() throws IOException {
+        Collecting c = new Collecting(false, -1);
+        c.write("a\r\n".getBytes());
+        c.close();
+        c.close();
+        assertEquals("a\r\n", c.bos.toString());
+    }
+
+    public void testDirectBuffersMatchArrays() throws IOException {
+        byte[] data = ("plain line with enough text\r\n  \t lead and trail \t \r\n"
+                + "lone\rcr and lone\nlf\r\r\n\tx  y\t\tz \r\n\r\n \r\n\r\n").getBytes();
+        for (boolean relaxed : new boolean[] { false, true }) {
+            for (long limit : new long[] { -1, 0, 17, 1000 }) {
+                Collecting expected = new Collecting(relaxed, limit);
+                expected.write(data, 0, data.length);
+                expected.close();
+                for (int size = 1; size <= data.length; size++) {
+                    Collecting actual = new Collecting(relaxed, limit);
+                    for (int off = 0; off < data.length; off += size) {
+                        int len = Math.min(size, data.length - off);
+                        ByteBuffer direct = ByteBuffer.allocateDirect(len + 2);
+                        direct.put((byte) 'x').put(data, off, len).put((byte) 'x');
+                        direct.position(1).limit(len + 1);
+                        actual.write(direct);
+                        assertEquals(len + 1, direct.position());
+                    }
+                    actual.close();
+                    assertEquals("relaxed=" + relaxed + " limit=" + limit + " size=" + size,
+                            expected.bos.toString(), actual.bos.toString());
+                }
+            }
+        }
+    }
+
+    public void testBareCRBeforeWhitespaceInDirectBuffer() throws IOException {
+        byte[] data = "x\r\t\ny".getBytes();
+        Collecting c = new Collecting(true, -1);
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+        c.write(direct);
+        c.close();
+        assertEquals("x\r \ny\r\n", c.bos.toString());
+    }
+
+    public void testHeapBuffersAreWrittenFromTheirArray() throws IOException {
+        byte[] data = "xa  b\r\n\r\nx".getBytes();
+        Collecting c = new Collecting(true, -1);
+        ByteBuffer buffer = ByteBuffer.wrap(data, 1, data.length - 2).slice();
+        c.write(buffer);
+        c.close();
+        assertFalse(buffer.hasRemaining());
+        assertEquals("a b\r\n", c.bos.toString());
+    }
+
+    /**
+     * The conversion of the stream based parsers: a CR not followed by a
+     * LF and a LF not preceded by a CR become CRLFs.
+     */
+    private static String convertLineEndings(String body) {
+        return body.replaceAll("\r(?!\n)|(?<!\r)\n", "\r\n");
+    }
+
+    public void testConvertedLineEndingsMatchConvertedInput() throws IOException {
+        String[] tokens = {"a", "bc", "defghijkl", " ", "  ", "\t", "\r", "\n", "\r\n", "\n\r", "\r\r\n"};
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder body = new StringBuilder();
+            int count = random.nextInt(40);
+            for (int j = 0; j < count; j++) {
+                body.append(tokens[random.nextInt(tokens.length)]);
+            }
+            byte[] data = body.toString().getBytes();
+            for (boolean relaxed : new boolean[] { false, true }) {
+                Collecting expected = new Collecting(relaxed, -1);
+                expected.write(convertLineEndings(body.toString()).getBytes());
+                expected.close();
+
+                Collecting chunked = new Collecting(relaxed, -1);
+                assertTrue(chunked.convertLineEndings());
+                chunker(data, chunked);
+                assertEquals(body.toString(), expected.bos.toString(), chunked.bos.toString());
+
+                Collecting direct = new Collecting(relaxed, -1);
+                direct.convertLineEndings();
+                ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+                buffer.put(data).flip();
+                direct.write(buffer);
+                direct.close();
+                assertEquals(body.toString(), expected.bos.toString(), direct.bos.toString());
+            }
+        }
+    }
+
+    public void testBareLineEndingsAreContentByDefault() throws IOException {
+        Collecting c = new Collecting(false, -1);
+        c.write("a\nb\rc".getBytes());
+        c.close();
+        assertEquals("a\nb\rc\r\n", c.bos.toString());
+    }
+}
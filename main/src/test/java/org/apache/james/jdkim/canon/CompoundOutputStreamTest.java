@@ -21,7 +21,9 @@ package org.apache.james.jdkim.canon;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -63,4 +65,28 @@ public class CompoundOutputStreamTest extends AbstractOutputStreamTestCase {
         }
     }
 
+    private static BodyCanonicalizer canonicalizer(boolean relaxed, final OutputStream out) {
+        return new BodyCanonicalizer(relaxed, -1) {
+            protected void output(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+        };
+    }
+
+    public void testConvertLineEndingsOnlyWhenAllTargetsDo() throws IOException {
+        ByteArrayOutputStream simple = new ByteArrayOutputStream();
+        ByteArrayOutputStream relaxed = new ByteArrayOutputStream();
+        List<OutputStream> oss = Arrays.<OutputStream>asList(
+                canonicalizer(false, simple), canonicalizer(true, relaxed));
+        CompoundOutputStream os = new CompoundOutputStream(oss);
+        assertTrue(os.convertLineEndings());
+        os.write("a  b\nc\r".getBytes());
+        os.close();
+        assertEquals("a  b\r\nc\r\n", simple.toString());
+        assertEquals("a b\r\nc\r\n", relaxed.toString());
+
+        assertFalse(new CompoundOutputStream(Arrays.asList(new ByteArrayOutputStream()))
+                .convertLineEndings());
+    }
+
 }
@@ -0,0 +1,104 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jdkim.canon;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class HeaderCanonicalizerTest {
+
+    private static final String[] FIELDS = {
+            "Subject: hello",
+            "Subject:hello",
+            "Subject :  hello   world  ",
+            "Subject:\thello\t \tworld",
+            "Subject: hello\r\n world",
+            "Subject: hello \r\n\t world \r\n ",
+            "Subject: a\r\n\r\n b",
+            "Subject: a\r\nb",
+            "Subject: \r\n",
+            "Subject:",
+            "Subject",
+            "Subject: x\u0001 \u0001",
+            "Subject: \u0001x",
+            "Subject: caf\u00e9  au lait",
+            "DKIM-Signature: v=1; a=rsa-sha256; c=relaxed/relaxed;\r\n\td=example.com; s=s1;\r\n\tb=",
+    };
+
+    private static byte[] legacyRelaxed(String name, String fv) {
+        String headerValue = fv.substring(fv.indexOf(':') + 1);
+        headerValue = headerValue.replaceAll("\r\n[\t ]", " ");
+        headerValue = headerValue.replaceAll("[\t ]+", " ");
+        headerValue = headerValue.trim();
+        return (name.toLowerCase() + ":" + headerValue).getBytes();
+    }
+
+    private static byte[] content(HeaderCanonicalizer canonicalizer) {
+        return Arrays.copyOf(canonicalizer.getBuffer(), canonicalizer.getLength());
+    }
+
+    @Test
+    public void testRelaxedMatchesLegacyImplementation() {
+        HeaderCanonicalizer canonicalizer = new HeaderCanonicalizer();
+        for (String field : FIELDS) {
+            canonicalizer.appendRelaxed("SubJect", field);
+            assertArrayEquals(field, legacyRelaxed("SubJect", field), content(canonicalizer));
+            canonicalizer.reset(Integer.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void testSimpleKeepsField() {
+        HeaderCanonicalizer canonicalizer = new HeaderCanonicalizer();
+        for (String field : FIELDS) {
+            canonicalizer.appendSimple(field);
+            assertArrayEquals(field, field.getBytes(), content(canonicalizer));
+            canonicalizer.reset(Integer.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void testAppendsMultipleHeaders() {
+        HeaderCanonicalizer canonicalizer = new HeaderCanonicalizer();
+        canonicalizer.appendRelaxed("From", "From:  a@example.com ");
+        canonicalizer.appendCRLF();
+        canonicalizer.appendRelaxed("To", "To: b@example.com");
+        assertEquals("from:a@example.com\r\nto:b@example.com", new String(content(canonicalizer)));
+    }
+
+    @Test
+    public void testGrowsAndReleasesBuffer() {
+        HeaderCanonicalizer canonicalizer = new HeaderCanonicalizer();
+        StringBuilder value = new StringBuilder("Subject:");
+        for (int i = 0; i < 1000; i++) {
+            value.append(" word");
+        }
+        canonicalizer.appendSimple(value);
+        assertEquals(value.length(), canonicalizer.getLength());
+        canonicalizer.reset(2048);
+        assertEquals(0, canonicalizer.getLength());
+        assertEquals(1024, canonicalizer.getBuffer().length);
+    }
+}
@@ -0,0 +1,121 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.jdkim.canon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+public class ParallelOutputStreamTest extends AbstractOutputStreamTestCase {
+
+    private byte[] testData;
+
+    protected void setUp() throws Exception {
+        testData = new byte[100000];
+        for (int i = 0; i < testData.length; i++) {
+            testData[i] = (byte) ((i * i * 4095 + (testData.length - i) * 17) % 128);
+        }
+    }
+
+    private void checkChunks(Executor executor) throws IOException {
+        List<ByteArrayOutputStream> oss = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            oss.add(new ByteArrayOutputStream());
+        }
+        // a small ring so the writer has to wait for the consumers.
+        ParallelOutputStream os = new ParallelOutputStream(oss, executor, 3, 1000);
+        chunker(testData, os);
+        for (ByteArrayOutputStream bos : oss) {
+            assertArrayEquals(testData, bos.toByteArray());
+        }
+    }
+
+    public void testForkJoinPool() throws IOException {
+        checkChunks(ForkJoinPool.commonPool());
+    }
+
+    public void testSingleThreadExecutor() throws IOException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            checkChunks(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testCallerRuns() throws IOException {
+        checkChunks(Runnable::run);
+    }
+
+    public void testRejectingExecutor() throws IOException {
+        checkChunks(command -> {
+            throw new RejectedExecutionException();
+        });
+    }
+
+    public void testNeverRunningExecutor() throws IOException {
+        // tasks are dropped: the writer has to do all the work.
+        checkChunks(command -> {
+        });
+    }
+
+    public void testSingleBytes() throws IOException {
+        List<ByteArrayOutputStream> oss = new ArrayList<>();
+        oss.add(new ByteArrayOutputStream());
+        oss.add(new ByteArrayOutputStream());
+        ParallelOutputStream os = new ParallelOutputStream(oss, ForkJoinPool.commonPool(), 2, 7);
+        for (int i = 0; i < 1000; i++) {
+            os.write(testData[i]);
+        }
+        os.close();
+        for (ByteArrayOutputStream bos : oss) {
+            assertEquals(1000, bos.size());
+        }
+    }
+
+    public void testFailureIsRethrownOnClose() throws IOException {
+        ByteArrayOutputStream ok = new ByteArrayOutputStream();
+        OutputStream failing = new OutputStream() {
+            public void write(int b) throws IOException {
+                throw new IOException("failing");
+            }
+        };
+        List<OutputStream> oss = new ArrayList<>();
+        oss.add(failing);
+        oss.add(ok);
+        ParallelOutputStream os = new ParallelOutputStream(oss, ForkJoinPool.commonPool(), 2, 100);
+        os.write(testData, 0, 1000);
+        try {
+            os.close();
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertEquals("failing", e.getMessage());
+        }
+        assertArrayEquals(Arrays.copyOf(testData, 1000), ok.toByteArray());
+    }
+}
@@ -22,6 +22,7 @@ package org.apache.james.jdkim.canon;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Random;
 
 public class RelaxedBodyCanonicalizerTest extends AbstractOutputStreamTestCase {
 
@@ -50,4 +51,80 @@ public class RelaxedBodyCanonicalizerTest extends AbstractOutputStreamTestCase {
         chunker(testData, os);
         assertArrayEquals(expectedData, bos.toByteArray());
     }
+
+    /**
+     * Straightforward implementation for CRLF terminated lines: whitespace
+     * runs reduced, whitespace at end of lines and empty lines at the end of
+     * the body removed, a single CRLF ending the body.
+     */
+    private static String reference(String body) {
+        StringBuilder sb = new StringBuilder();
+        String[] lines = body.split("\r\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].replaceAll("[ \t]+", " ");
+            if (i < lines.length - 1) {
+                sb.append(line.replaceAll(" $", "")).append("\r\n");
+            } else {
+                sb.append(line);
+            }
+        }
+        while (sb.length() >= 2 && sb.lastIndexOf("\r\n") == sb.length() - 2) {
+            sb.setLength(sb.length() - 2);
+        }
+        return sb.append("\r\n").toString();
+    }
+
+    public void testRandomBodies() throws IOException {
+        String[] tokens = {"a", "bc", "defgh", "ijklmnopq", " ", "  ", "\t", " \t ", "\r\n", "\r\n\r\n"};
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder body = new StringBuilder();
+            int count = random.nextInt(60);
+            for (int j = 0; j < count; j++) {
+                body.append(tokens[random.nextInt(tokens.length)]);
+            }
+            byte[] data = body.toString().getBytes();
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            chunker(data, new RelaxedBodyCanonicalizer(bos));
+            assertEquals(body.toString(), reference(body.toString()), bos.toString());
+
+            bos.reset();
+            RelaxedBodyCanonicalizer os = new RelaxedBodyCanonicalizer(bos);
+            for (byte b : data) {
+                os.write(b);
+            }
+            os.close();
+            assertEquals(body.toString(), reference(body.toString()), bos.toString());
+        }
+    }
+
+    /**
+     * A CR not followed by LF is content: the whitespace after it is reduced
+     * in place and a following LF does not make a CRLF.
+     */
+    public void testBareCarriageReturns() throws IOException {
+        String[][] cases = {
+                {"x\r\t\ny\r\n", "x\r \ny\r\n"},
+                {"x\r\n\r \n", "x\r\n\r \n\r\n"},
+                {"x\r \t y\r\n", "x\r y\r\n"},
+                {"x\r\t\r\n", "x\r\r\n"},
+                {"x\r\r\t\n", "x\r\r \n\r\n"},
+        };
+        for (String[] c : cases) {
+            byte[] data = c[0].getBytes();
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            chunker(data, new RelaxedBodyCanonicalizer(bos));
+            assertEquals(c[0], c[1], bos.toString());
+
+            bos.reset();
+            RelaxedBodyCanonicalizer os = new RelaxedBodyCanonicalizer(bos);
+            for (byte b : data) {
+                os.write(b);
+            }
+            os.close();
+            assertEquals(c[0], c[1], bos.toString());
+        }
+    }
 }
@@ -184,6 +184,23 @@ public class TagValueTest {
         Assert.assertTrue(tags.contains("v"));
     }
 
+    @Test
+    public void testParsedValuesAreStrings() {
+        TagValue tv = new TagValue("t=value; v=\r\n\tencoded value ;");
+        Assert.assertEquals(String.class, tv.getValue("t").getClass());
+        Assert.assertEquals("encoded value", tv.getValue("v"));
+        Assert.assertSame(tv.getValue("v"), tv.getValue("v"));
+    }
+
+    @Test
+    public void testParsedValuesEqualSetValues() {
+        TagValue parsed = new TagValue("t=value; v=other");
+        TagValue set = new TagValue("t=value; v=x");
+        set.setValue("v", "other");
+        Assert.assertEquals(parsed, set);
+        Assert.assertEquals(parsed.hashCode(), set.hashCode());
+    }
+
     public boolean tagValuesEquals(String t1, String t2) {
         TagValue tv1 = new TagValue(t1);
         TagValue tv2 = new TagValue(t2);